@@ -1,13 +1,24 @@
 package ascii_art;
 
 import ascii_output.AsciiOutput;
+import image.BandBrightnessReader;
+import image.BrightnessGrid;
 import image.Image;
 import image.ImageProcessor;
+import image.LuminanceTable;
+import image.ShapeGrid;
+import image_char_matching.MatcherSnapshot;
 import image_char_matching.SubImgCharMatcher;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
 
 /**
  * AsciiArtAlgorithm class
@@ -17,11 +28,35 @@ public class AsciiArtAlgorithm {
 
     private static final int MIN_CHAR = 32;
     private static final int MAX_CHAR = 127;
+    private static final int SERIAL = 1;
+    private static final int BANDS_PER_THREAD = 4;
+    private static final long SHAPE_CACHE_BUDGET = BrightnessGridCache.DEFAULT_BUDGET;
     private final SubImgCharMatcher subImageCharMatcher;
     private Image image = null;
+    private String streamingPath = null;
+    private int width = 0;
+    private int height = 0;
+    private int paddedHeight = 0;
     private AsciiOutput renderer;
     private int resolution;
-    private final HashMap<Image,Double> valueSaver = new HashMap<>();
+    private LuminanceTable luminanceTable = null;
+    private ForkJoinPool pool = null;
+    private final BrightnessGridCache gridCache = new BrightnessGridCache();
+    private BrightnessGrid currentGrid = null;
+    private ShapeGrid currentShapes = null;
+    private final LinkedHashMap<Integer, ShapeGrid> shapeCache = new LinkedHashMap<>(16, 0.75f, true);
+    private long shapeCacheBytes = 0;
+    private boolean shapeMatching = false;
+    private boolean colorMode = false;
+    private int[][] currentColors = null;
+    private boolean currentColorsArea = false;
+    private int areaRows = 0;
+    private int areaCols = 0;
+    private BrightnessGrid currentAreaGrid = null;
+    private Object lastMappedSource = null;
+    private long lastMappedVersion = -1;
+    private char[][] lastAsciiArt = null;
+    private ConversionMetrics metrics = new StageStatistics();
 
 
     /**
@@ -31,42 +66,467 @@ public class AsciiArtAlgorithm {
      * @param resolution the resolution of the ascii art that we want to get
      * */
     public AsciiArtAlgorithm(String imagePath, char[] charSet, int resolution) {
+        this(imagePath, charSet, resolution, SERIAL);
+    }
+
+    /**
+     * A constructor for AsciiArtAlgorithm class
+     * an image of more pixels than StreamingAsciiArt.isLarge allows is not decoded whole,
+     * its brightness grids are read band by band, and shape matching, colors and setSize are refused for it.
+     * @param imagePath   the path of the image that we want to convert it to ascii art
+     * @param charSet     the char set that we want to use to convert the image to ascii art
+     * @param resolution  the resolution of the ascii art that we want to get
+     * @param parallelism the number of threads that convert the image, 1 for serial conversion
+     * */
+    public AsciiArtAlgorithm(String imagePath, char[] charSet, int resolution, int parallelism) {
+        setParallelism(parallelism);
+        StageTimer timer = new StageTimer();
         try {
-            this.image = new Image(imagePath);
+            try (BandBrightnessReader reader = new BandBrightnessReader(imagePath)) {
+                this.width = reader.getWidth();
+                this.height = reader.getHeight();
+                this.paddedHeight = reader.getPaddedHeight();
+            }
+            if (StreamingAsciiArt.isLarge(width, height)) {
+                this.streamingPath = imagePath; // never decoded whole
+            } else {
+                this.image = new Image(imagePath);
+            }
         }catch (IOException e){
             System.out.println("Error: " + e.getMessage());
         }
+        timer.stop(Stage.LOAD, metrics);
         this.renderer = OutputFactory.createOutput("console");
         this.subImageCharMatcher = new SubImgCharMatcher(charSet);
         this.resolution = resolution;
     }
 
+    /**
+     * A constructor for AsciiArtAlgorithm class, converting an image that is already loaded
+     * with a matcher that may be shared between algorithms.
+     * every run maps through one snapshot of the matcher, so it may be changed meanwhile.
+     * @param image               the image that we want to convert it to ascii art
+     * @param subImageCharMatcher the matcher of the char set that we want to use
+     * @param resolution          the resolution of the ascii art that we want to get
+     * */
+    public AsciiArtAlgorithm(Image image, SubImgCharMatcher subImageCharMatcher, int resolution) {
+        this.image = image;
+        this.width = image.getWidth();
+        this.height = image.getHeight();
+        this.renderer = OutputFactory.createOutput("console");
+        this.subImageCharMatcher = subImageCharMatcher;
+        this.resolution = resolution;
+    }
+
     /**
      * run method
      * A method that converts the image to ascii art
+     * the brightness grid of the current resolution is kept, so after a change of
+     * the char set or rounding only the chars are mapped again,
+     * and when nothing changed the last ascii art is reused.
      * @return the ascii art
      * */
     public char[][] run() {
-        Image paddedImage = ImageProcessor.padImageWithWhite(image);
-        int squareSize = paddedImage.getHeight() / resolution;
-        int numCols = paddedImage.getWidth() / squareSize;
-        char[][] asciiArt = new char[resolution][numCols];
-        ArrayList<Image> subImages = ImageProcessor.getSubImages(paddedImage, resolution);
-
-        for (int i = 0; i < subImages.size(); i++) {
-            Image subImg = subImages.get(i);
-            double brightness;
-            if (!valueSaver.containsKey(subImg)) {
-                brightness = ImageProcessor.calculateBrightness(subImg);
-                valueSaver.put(subImg, brightness);
+        MatcherSnapshot snapshot = subImageCharMatcher.getSnapshot();
+        long version = snapshot.getVersion();
+        if (shapeMatching) {
+            ShapeGrid shapes = shapeGrid();
+            if (shapes != lastMappedSource || version != lastMappedVersion) {
+                mapAll(shapes, shapes.getRows(), shapes.getCols(), version,
+                        asciiArt -> (fromRow, toRow) -> mapShapeRows(shapes, snapshot, fromRow, toRow, asciiArt));
+            }
+        } else {
+            BrightnessGrid grid = isAreaTiling() ? areaGrid() : brightnessGrid();
+            if (grid != lastMappedSource || version != lastMappedVersion) {
+                mapAll(grid, grid.getRows(), grid.getCols(), version,
+                        asciiArt -> (fromRow, toRow) -> mapRows(grid, snapshot, fromRow, toRow, asciiArt));
+            }
+        }
+        char[][] copy = new char[lastAsciiArt.length][];
+        for (int row = 0; row < copy.length; row++) {
+            copy[row] = lastAsciiArt[row].clone();
+        }
+        return copy;
+    }
+
+    /**
+     * maps a grid to new ascii art and keeps it as the last ascii art.
+     * @param source  the grid that is mapped
+     * @param rows    the number of rows of the grid
+     * @param cols    the number of columns of the grid
+     * @param version the version of the matcher
+     * @param bandOf  gives the band that maps rows of the grid into the given ascii art
+     * */
+    private void mapAll(Object source, int rows, int cols, long version, Function<char[][], RowBand> bandOf) {
+        StageTimer timer = new StageTimer();
+        char[][] asciiArt = new char[rows][cols];
+        forEachBand(rows, bandOf.apply(asciiArt));
+        timer.stop(Stage.MATCH, metrics);
+        lastAsciiArt = asciiArt;
+        lastMappedSource = source;
+        lastMappedVersion = version;
+    }
+
+    /**
+     * returns the shape grid of the image at the current resolution,
+     * the grids of the resolutions used are kept up to SHAPE_CACHE_BUDGET bytes, least recently used first out.
+     * @return the shape grid
+     * */
+    private ShapeGrid shapeGrid() {
+        if (currentShapes != null && currentShapes.getRows() == resolution) {
+            return currentShapes;
+        }
+        ShapeGrid cached = shapeCache.get(resolution);
+        if (cached != null) {
+            currentShapes = cached;
+            return currentShapes;
+        }
+        LuminanceTable table = luminanceTable();
+        int cells = subImageCharMatcher.getShapeCells();
+        StageTimer timer = new StageTimer();
+        int numCols = ImageProcessor.countTileColumns(table, resolution);
+        int rows = resolution;
+        long[] bits = new long[rows * numCols * ShapeGrid.wordsPerTile(cells)];
+        forEachBand(rows, (fromRow, toRow) ->
+                ImageProcessor.calculateShapeRows(table, rows, cells, fromRow, toRow, bits));
+        currentShapes = new ShapeGrid(bits, rows, numCols, cells);
+        timer.stop(Stage.SHAPE, metrics);
+        cacheShapes(currentShapes);
+        return currentShapes;
+    }
+
+    /**
+     * keeps a shape grid, dropping the least recently used grids over the budget.
+     * a grid larger than the whole budget is not kept.
+     * @param shapes the shape grid of the resolution of its rows
+     * */
+    private void cacheShapes(ShapeGrid shapes) {
+        long size = (long) shapes.getBits().length * Long.BYTES;
+        if (size > SHAPE_CACHE_BUDGET) {
+            return;
+        }
+        shapeCache.put(shapes.getRows(), shapes);
+        shapeCacheBytes += size;
+        Iterator<Map.Entry<Integer, ShapeGrid>> eldest = shapeCache.entrySet().iterator();
+        while (shapeCacheBytes > SHAPE_CACHE_BUDGET && eldest.hasNext()) {
+            shapeCacheBytes -= (long) eldest.next().getValue().getBits().length * Long.BYTES;
+            eldest.remove();
+        }
+    }
+
+    /**
+     * returns the average color of every tile at the current resolution,
+     * the colors of the current resolution are kept.
+     * @return the packed RGB color of every tile
+     * */
+    private int[][] tileColors() {
+        LuminanceTable table = luminanceTable(true);
+        boolean area = isAreaTiling();
+        int rows = area ? areaRows : resolution;
+        int cols = area ? areaCols : ImageProcessor.countTileColumns(table, rows);
+        if (currentColors != null && currentColorsArea == area
+                && currentColors.length == rows && currentColors[0].length == cols) {
+            return currentColors;
+        }
+        StageTimer timer = new StageTimer();
+        int[][] colors = new int[rows][cols];
+        forEachBand(rows, (fromRow, toRow) -> {
+            if (area) {
+                ImageProcessor.calculateAreaColorRows(table, rows, cols, fromRow, toRow, colors);
             } else {
-                brightness = valueSaver.get(subImg);
+                ImageProcessor.calculateColorRows(table, rows, fromRow, toRow, colors);
+            }
+        });
+        currentColors = colors;
+        currentColorsArea = area;
+        timer.stop(Stage.COLOR, metrics);
+        return currentColors;
+    }
+
+    /**
+     * returns the area-weighted brightness grid of the image at the current size,
+     * the grid of the current size is kept.
+     * @return the brightness grid
+     * */
+    private BrightnessGrid areaGrid() {
+        if (currentAreaGrid != null && currentAreaGrid.getRows() == areaRows && currentAreaGrid.getCols() == areaCols) {
+            return currentAreaGrid;
+        }
+        LuminanceTable table = luminanceTable();
+        StageTimer timer = new StageTimer();
+        int rows = areaRows;
+        int cols = areaCols;
+        long[] sums = new long[rows * cols];
+        forEachBand(rows, (fromRow, toRow) ->
+                ImageProcessor.calculateAreaBrightnessRows(table, rows, cols, fromRow, toRow, sums));
+        currentAreaGrid = new BrightnessGrid(sums, ImageProcessor.areaTileMax(table), rows, cols);
+        timer.stop(Stage.BRIGHTNESS, metrics);
+        return currentAreaGrid;
+    }
+
+    /**
+     * checks whether the image is tiled to the size set by setSize.
+     * @return true if a size is set and the tiles are matched by brightness
+     * */
+    private boolean isAreaTiling() {
+        return areaRows > 0 && !shapeMatching;
+    }
+
+    /**
+     * returns the luminance table of the padded image, building it on the first call.
+     * in color mode the table sums the color channels in the same pass.
+     * @return the luminance table
+     * */
+    private LuminanceTable luminanceTable() {
+        return luminanceTable(colorMode);
+    }
+
+    /**
+     * returns the luminance table of the padded image, building it on the first call,
+     * a table built before without the color channels is built again when they are needed.
+     * @param withColors true if the table must sum the color channels too
+     * @return the luminance table
+     * */
+    private LuminanceTable luminanceTable(boolean withColors) {
+        if (luminanceTable == null || (withColors && !luminanceTable.hasColors())) {
+            StageTimer timer = new StageTimer();
+            Image padded = ImageProcessor.padImageWithWhite(image);
+            timer.stop(Stage.PAD, metrics);
+            timer = new StageTimer();
+            luminanceTable = ImageProcessor.buildLuminanceTable(padded, withColors);
+            timer.stop(Stage.LUMINANCE_TABLE, metrics);
+        }
+        return luminanceTable;
+    }
+
+    /**
+     * returns the brightness grid of the image at the current resolution,
+     * the grid of the current resolution is kept, other grids come from the pyramid.
+     * the grids of a large image are read band by band and kept in the pyramid the same way.
+     * @return the brightness grid
+     * */
+    private BrightnessGrid brightnessGrid() {
+        if (currentGrid != null && currentGrid.getRows() == resolution) {
+            return currentGrid;
+        }
+        Object source = isStreaming() ? streamingPath : image;
+        if (!isStreaming()) {
+            luminanceTable();
+        }
+        StageTimer timer = new StageTimer();
+        currentGrid = gridCache.get(source, resolution);
+        if (currentGrid == null) {
+            currentGrid = aggregateFinerGrid(source, resolution);
+        }
+        if (currentGrid == null) {
+            currentGrid = isStreaming() ? streamGrid(resolution) : computeGrid(resolution);
+            gridCache.put(source, resolution, currentGrid);
+        }
+        timer.stop(Stage.BRIGHTNESS, metrics);
+        return currentGrid;
+    }
+
+    /**
+     * reads the grid of a large image band by band, without decoding the whole image.
+     * @param rows the resolution of the grid
+     * @return the grid
+     * */
+    private BrightnessGrid streamGrid(int rows) {
+        try (BandBrightnessReader reader = new BandBrightnessReader(streamingPath)) {
+            return reader.readGrid(rows);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * derives a grid from the pyramid of cached grids: the tiles of a resolution are
+     * exactly 2x2 blocks of the tiles of twice the resolution whenever the tile side halves,
+     * so a coarser grid is aggregated from the nearest finer cached grid instead of
+     * touching the pixels. the intermediate levels are cached on the way.
+     * @param source the image or the path of the streamed image the grids are cached for
+     * @param rows   the resolution of the grid
+     * @return the grid, or null if no finer grid is cached
+     * */
+    private BrightnessGrid aggregateFinerGrid(Object source, int rows) {
+        int height = luminanceTable != null ? luminanceTable.getHeight() : paddedHeight;
+        for (int level = rows; level * 2 <= height && height / level == 2 * (height / (level * 2)); level *= 2) {
+            BrightnessGrid finer = gridCache.get(source, level * 2);
+            if (finer != null) {
+                for (; level >= rows; level /= 2) {
+                    finer = finer.downsample();
+                    gridCache.put(source, level, finer);
+                }
+                return finer;
             }
-            int row = i / numCols;
-            int col = i % numCols;
-            asciiArt[row][col] = subImageCharMatcher.getCharByImageBrightness(brightness);
         }
-        return asciiArt;
+        return null;
+    }
+
+    /**
+     * computes a grid from the luminance table.
+     * @param rows the resolution of the grid
+     * @return the grid
+     * */
+    private BrightnessGrid computeGrid(int rows) {
+        int numCols = ImageProcessor.countTileColumns(luminanceTable, rows);
+        long[] sums = new long[rows * numCols];
+        forEachBand(rows, (fromRow, toRow) ->
+                ImageProcessor.calculateBrightnessRows(luminanceTable, rows, fromRow, toRow, sums));
+        return new BrightnessGrid(sums, ImageProcessor.tileMax(luminanceTable, rows), rows, numCols);
+    }
+
+    /**
+     * maps a band of tile rows to chars.
+     * @param grid     the brightness grid
+     * @param snapshot the matcher snapshot of the run
+     * @param fromRow  the first tile row of the band
+     * @param toRow    the tile row after the last row of the band
+     * @param asciiArt the ascii art being filled
+     * */
+    private static void mapRows(BrightnessGrid grid, MatcherSnapshot snapshot, int fromRow, int toRow,
+                                char[][] asciiArt) {
+        for (int row = fromRow; row < toRow; row++) {
+            char[] line = asciiArt[row];
+            for (int col = 0; col < line.length; col++) {
+                line[col] = snapshot.getCharByFixedBrightness(grid.getFixed(row, col));
+            }
+        }
+    }
+
+    /**
+     * maps a band of tile rows to chars by their shapes.
+     * a tile of the same shape as the tile before it in its row takes its char without a search,
+     * so flat areas cost a comparison of the bits per tile.
+     * @param shapes   the shape grid
+     * @param snapshot the matcher snapshot of the run
+     * @param fromRow  the first tile row of the band
+     * @param toRow    the tile row after the last row of the band
+     * @param asciiArt the ascii art being filled
+     * */
+    private static void mapShapeRows(ShapeGrid shapes, MatcherSnapshot snapshot, int fromRow, int toRow,
+                                     char[][] asciiArt) {
+        long[] bits = shapes.getBits();
+        int words = ShapeGrid.wordsPerTile(shapes.getCells());
+        for (int row = fromRow; row < toRow; row++) {
+            char[] line = asciiArt[row];
+            for (int col = 0; col < line.length; col++) {
+                int offset = shapes.offsetOf(row, col);
+                line[col] = col > 0 && Arrays.equals(bits, offset - words, offset, bits, offset, offset + words)
+                        ? line[col - 1]
+                        : snapshot.getCharByShape(bits, offset);
+            }
+        }
+    }
+
+    /**
+     * runs the given band over all the rows, serially or split into bands on the pool.
+     * the bands share no state but the output arrays,
+     * so the parallel and serial conversions give the same result.
+     * @param rows the number of rows
+     * @param band the work of a band of rows
+     * */
+    private void forEachBand(int rows, RowBand band) {
+        if (pool == null) {
+            band.run(0, rows);
+        } else {
+            int bandRows = Math.max(1, rows / (pool.getParallelism() * BANDS_PER_THREAD));
+            pool.invoke(new BandTask(0, rows, bandRows, band));
+        }
+    }
+
+    /**
+     * setParallelism method
+     * @param parallelism the number of threads that convert the image, 1 for serial conversion
+     * @return true if the parallelism was changed
+     * */
+    public boolean setParallelism(int parallelism) {
+        if (parallelism < SERIAL) {
+            return false;
+        }
+        if (pool != null) {
+            pool.shutdown();
+        }
+        pool = parallelism == SERIAL ? null : new ForkJoinPool(parallelism);
+        return true;
+    }
+
+    /**
+     * getParallelism method
+     * @return the number of threads that convert the image
+     * */
+    public int getParallelism() {
+        return pool == null ? SERIAL : pool.getParallelism();
+    }
+
+    /**
+     * isStreaming method
+     * @return true if the image is too large to decode whole and is read band by band,
+     *         then shape matching, colors and setSize are refused
+     * */
+    public boolean isStreaming() {
+        return streamingPath != null;
+    }
+
+    /**
+     * setMatching method
+     * @param matching "brightness" to match the brightness of every tile to a char,
+     *                 "shape" to match the shape of every tile to the glyph of a char
+     * @return true if the matching method was changed, false for shape matching of a streamed image
+     * */
+    public boolean setMatching(String matching) {
+        switch (matching) {
+            case "brightness" -> shapeMatching = false;
+            case "shape" -> {
+                if (isStreaming()) {
+                    return false;
+                }
+                shapeMatching = true;
+            }
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * setColor method
+     * @param color true to output every char in the average color of its tile,
+     *              false to output black chars
+     * @return true if the color mode was changed, false for colors of a streamed image
+     * */
+    public boolean setColor(boolean color) {
+        if (color && isStreaming()) {
+            return false;
+        }
+        colorMode = color;
+        return true;
+    }
+
+    /**
+     * isColor method
+     * @return true if the chars are output in the colors of their tiles
+     * */
+    public boolean isColor() {
+        return colorMode;
+    }
+
+    /**
+     * runColors method
+     * @return the packed RGB average color of every tile of the ascii art run returns
+     * @throws IllegalStateException if the image is streamed
+     * */
+    public int[][] runColors() {
+        if (isStreaming()) {
+            throw new IllegalStateException("The image is too large to color.");
+        }
+        int[][] colors = tileColors();
+        int[][] copy = new int[colors.length][];
+        for (int row = 0; row < copy.length; row++) {
+            copy[row] = colors[row].clone();
+        }
+        return copy;
     }
 
     /**
@@ -82,16 +542,46 @@ public class AsciiArtAlgorithm {
      * responsible for changing the resolution of the ascii art
      * */
     public boolean changeResolution(float direction) {
-        int minRes = Math.max(1, image.getWidth()/image.getHeight()) ;
-        int maxRes = Math.min(image.getHeight(), image.getWidth());
         int newRes = (int) (resolution * direction);
-        if (newRes >= minRes && newRes <= maxRes) {
+        if (fitsImage(newRes, width, height)) {
             resolution = newRes;
+            areaRows = 0;
+            areaCols = 0;
             return true;
         }
         return false;
     }
 
+    /**
+     * checks whether a resolution fits an image, the bounds of changeResolution.
+     * @param resolution the resolution
+     * @param width      the width of the image
+     * @param height     the height of the image
+     * @return true if the resolution is at least the aspect ratio and at most the shorter side
+     * */
+    static boolean fitsImage(int resolution, int width, int height) {
+        return resolution >= Math.max(1, width / height) && resolution <= Math.min(height, width);
+    }
+
+    /**
+     * setSize method
+     * tiles the image into exactly the given number of columns and rows, with area-weighted tiles
+     * over the original pixels instead of the square tiles of the resolution over the padded image.
+     * applies to brightness matching, shape matching keeps the square tiles.
+     * changing the resolution returns to the square tiles.
+     * @param cols the number of columns of the ascii art, at most the width of the image
+     * @param rows the number of rows of the ascii art, at most the height of the image
+     * @return true if the size was changed, false for a streamed image
+     * */
+    public boolean setSize(int cols, int rows) {
+        if (isStreaming() || cols < 1 || rows < 1 || cols > width || rows > height) {
+            return false;
+        }
+        areaCols = cols;
+        areaRows = rows;
+        return true;
+    }
+
     /**
      * getCharSet method
      * @return the char set that we used to convert the image to ascii art
@@ -138,11 +628,12 @@ public class AsciiArtAlgorithm {
      * SetRenderer method
      * set the renderer
      * @param value the renderer that we want to use
-     *                it can be "html" or "console"
+     *                it can be "html", "console" or "ansi"
      * */
     public boolean setRenderer(String value) {
         AsciiOutput asciiOutput = value.startsWith("html")?OutputFactory.createOutput("html"):null;
         asciiOutput = value.startsWith("console")?OutputFactory.createOutput("console"):asciiOutput;
+        asciiOutput = value.startsWith("ansi")?OutputFactory.createOutput("ansi"):asciiOutput;
         if (asciiOutput != null) {
             this.renderer = asciiOutput;
             return true;
@@ -153,7 +644,69 @@ public class AsciiArtAlgorithm {
      * A method that returns the renderer
      * */
     public void apply() {
-        renderer.out(run());
+        char[][] asciiArt = run();
+        int[][] colors = colorMode ? tileColors() : null;
+        StageTimer timer = new StageTimer();
+        if (colors != null) {
+            renderer.out(asciiArt, colors);
+        } else {
+            renderer.out(asciiArt);
+        }
+        timer.stop(Stage.OUTPUT, metrics);
+    }
+
+    /**
+     * getMetrics method
+     * @return the metrics of the stages of the conversions of this algorithm
+     * */
+    public ConversionMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * setMetrics method
+     * records the stages of the later conversions in the given metrics,
+     * several algorithms may share one metrics.
+     * @param metrics the metrics
+     * */
+    public void setMetrics(ConversionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * work done on a band of rows.
+     * */
+    private interface RowBand {
+        void run(int fromRow, int toRow);
+    }
+
+    /**
+     * splits the rows in halves until a band is small enough to run.
+     * */
+    private static class BandTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int fromRow;
+        private final int toRow;
+        private final int bandRows;
+        private final RowBand band;
+
+        BandTask(int fromRow, int toRow, int bandRows, RowBand band) {
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+            this.bandRows = bandRows;
+            this.band = band;
+        }
+
+        @Override
+        protected void compute() {
+            if (toRow - fromRow <= bandRows) {
+                band.run(fromRow, toRow);
+                return;
+            }
+            int middle = (fromRow + toRow) >>> 1;
+            invokeAll(new BandTask(fromRow, middle, bandRows, band),
+                    new BandTask(middle, toRow, bandRows, band));
+        }
     }
 
 }
@@ -0,0 +1,420 @@
+package ascii_art;
+
+import ascii_output.AsciiOutput;
+import ascii_output.ConsoleAsciiOutput;
+import ascii_output.HtmlAsciiOutput;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import image.Image;
+import image_char_matching.SubImgCharMatcher;
+
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HTTP server mode of the ascii art algorithm, one JVM serving any number of conversions.
+ * usage: java ascii_art.AsciiArtServer [--port N] [--max-concurrent N] [--max-bytes N] [--max-pixels N]
+ * endpoints:
+ *   POST /convert?res=N&amp;chars=spec&amp;round=abs|up|down&amp;output=console|html&amp;match=brightness|shape
+ *        the body is the image file, the response is the ascii art as text or as an HTML page
+ *   GET  /metrics
+ *        the request counters, latency percentiles and the time of every conversion stage
+ * Every request runs on its own virtual thread when the JVM has them, otherwise on a cached pool.
+ * At most max-concurrent conversions run at once, the requests beyond are rejected with 503.
+ * A body of more than max-bytes bytes, or an image of more than max-pixels pixels by its header,
+ * is rejected with 413 before it is decoded, since a small file may decode to a huge image.
+ * The glyph cache and the matchers of the MAX_MATCHERS most recently used (chars, round) are shared
+ * between the requests, a char set is sorted and deduplicated first and may hold at most MAX_CHARS chars.
+ * */
+public class AsciiArtServer {
+    private static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_RES = 128;
+    private static final String DEFAULT_CHARS = "0-9";
+    private static final int DEFAULT_MAX_BYTES = 32 * 1024 * 1024;
+    private static final long DEFAULT_MAX_PIXELS = 16L * 1024 * 1024;
+    private static final String FONT_NAME = "Courier New";
+    private static final String GLYPH_CACHE_PROPERTY = "glyph.cache";
+    private static final int OK = 200;
+    private static final int BAD_REQUEST = 400;
+    private static final int METHOD_NOT_ALLOWED = 405;
+    private static final int TOO_LARGE = 413;
+    private static final int INTERNAL_ERROR = 500;
+    private static final int UNAVAILABLE = 503;
+    private static final int BUFFER_SIZE = 8192;
+    private static final int STOP_DELAY_SECONDS = 1;
+    private static final int MAX_CHARS = 128;
+    private static final int MAX_MATCHERS = 64;
+
+    private final Semaphore admission;
+    private final int maxConcurrent;
+    private final int maxBytes;
+    private final long maxPixels;
+    private final LinkedHashMap<String, SubImgCharMatcher> matchers = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SubImgCharMatcher> eldest) {
+            return size() > MAX_MATCHERS;
+        }
+    };
+    private final LatencyRecorder latencies = new LatencyRecorder();
+    private final ConversionMetrics metrics = new StageStatistics();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private HttpServer server = null;
+    private ExecutorService executor = null;
+
+    /**
+     * main method of the server.
+     * @param args see the class comment
+     * */
+    public static void main(String[] args) {
+        int port = DEFAULT_PORT;
+        int maxConcurrent = Runtime.getRuntime().availableProcessors() * 2;
+        int maxBytes = DEFAULT_MAX_BYTES;
+        long maxPixels = DEFAULT_MAX_PIXELS;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--port" -> port = Integer.parseInt(args[++i]);
+                    case "--max-concurrent" -> maxConcurrent = Integer.parseInt(args[++i]);
+                    case "--max-bytes" -> maxBytes = Integer.parseInt(args[++i]);
+                    case "--max-pixels" -> maxPixels = Long.parseLong(args[++i]);
+                    default -> throw new IllegalArgumentException(args[i]);
+                }
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println("Did not run due to incorrect format.");
+            return;
+        }
+        if (maxConcurrent < 1 || maxBytes < 1 || maxPixels < 1) {
+            System.err.println("Did not run due to incorrect format.");
+            return;
+        }
+        try {
+            String glyphCacheFile = System.getProperty(GLYPH_CACHE_PROPERTY);
+            Shell.loadGlyphCache(glyphCacheFile);
+            AsciiArtServer server = new AsciiArtServer(maxConcurrent, maxBytes, maxPixels);
+            server.start(port);
+            System.out.println("Serving on port " + port);
+        } catch (IOException e) {
+            System.err.println("Failed to start the server: " + e.getMessage());
+        }
+    }
+
+    /**
+     * A constructor for AsciiArtServer class, accepting images of at most DEFAULT_MAX_PIXELS pixels
+     * @param maxConcurrent the number of conversions that may run at once
+     * @param maxBytes      the largest image accepted, in bytes
+     * */
+    public AsciiArtServer(int maxConcurrent, int maxBytes) {
+        this(maxConcurrent, maxBytes, DEFAULT_MAX_PIXELS);
+    }
+
+    /**
+     * A constructor for AsciiArtServer class
+     * @param maxConcurrent the number of conversions that may run at once
+     * @param maxBytes      the largest image accepted, in bytes
+     * @param maxPixels     the largest image accepted, in pixels
+     * */
+    public AsciiArtServer(int maxConcurrent, int maxBytes, long maxPixels) {
+        this.admission = new Semaphore(maxConcurrent);
+        this.maxConcurrent = maxConcurrent;
+        this.maxBytes = maxBytes;
+        this.maxPixels = maxPixels;
+    }
+
+    /**
+     * starts serving.
+     * @param port the port to listen on, 0 for any free port
+     * @return the port the server listens on
+     * @throws IOException if the port cannot be bound
+     * */
+    public int start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        executor = newRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/convert", this::handleConvert);
+        server.createContext("/metrics", this::handleMetrics);
+        server.start();
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * stops serving, waiting a moment for the running requests.
+     * */
+    public void stop() {
+        if (server != null) {
+            server.stop(STOP_DELAY_SECONDS);
+            executor.shutdown();
+            server = null;
+        }
+    }
+
+    /**
+     * getMetrics method
+     * @return the metrics of the stages of all the conversions
+     * */
+    public ConversionMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * creates a virtual thread per task executor through reflection, since it only exists
+     * from Java 21, falling back to a cached pool, the admission control bounds the work either way.
+     * @return the executor of the requests
+     * */
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * handles a conversion request.
+     * @param exchange the exchange
+     * @throws IOException if the response cannot be sent
+     * */
+    private void handleConvert(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                send(exchange, METHOD_NOT_ALLOWED, "text/plain", "Did not convert, use POST.\n");
+                return;
+            }
+            if (!admission.tryAcquire()) {
+                rejected.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                send(exchange, UNAVAILABLE, "text/plain", "Did not convert, the server is busy.\n");
+                return;
+            }
+            try {
+                convert(exchange);
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+                send(exchange, INTERNAL_ERROR, "text/plain", "Failed to convert: " + e.getMessage() + "\n");
+            } finally {
+                admission.release();
+            }
+        }
+    }
+
+    /**
+     * converts the image of a request and sends the ascii art.
+     * @param exchange the exchange
+     * @throws IOException if the request cannot be read or the response cannot be sent
+     * */
+    private void convert(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+        String output = parameters.getOrDefault("output", "console");
+        String match = parameters.getOrDefault("match", "brightness");
+        String rounder = switch (parameters.getOrDefault("round", "abs")) {
+            case "up" -> "upper";
+            case "down" -> "lower";
+            case "abs" -> "abs";
+            default -> null;
+        };
+        int resolution;
+        try {
+            resolution = Integer.parseInt(parameters.getOrDefault("res", String.valueOf(DEFAULT_RES)));
+        } catch (NumberFormatException e) {
+            resolution = 0;
+        }
+        char[] chars = canonicalChars(CharSetParser.parseOrChars(parameters.getOrDefault("chars", DEFAULT_CHARS)));
+        if (rounder == null || resolution < 1 || chars.length <= 1 || chars.length > MAX_CHARS
+                || !(output.equals("console") || output.equals("html"))
+                || !(match.equals("brightness") || match.equals("shape"))) {
+            failed.incrementAndGet();
+            send(exchange, BAD_REQUEST, "text/plain", "Did not convert due to incorrect format.\n");
+            return;
+        }
+        byte[] body = readBody(exchange.getRequestBody());
+        if (body == null) {
+            failed.incrementAndGet();
+            send(exchange, TOO_LARGE, "text/plain", "Did not convert, the image is too large.\n");
+            return;
+        }
+        StageTimer timer = new StageTimer();
+        BufferedImage decoded = decode(exchange, body);
+        if (decoded == null) {
+            failed.incrementAndGet();
+            return;
+        }
+        Image image = new Image(decoded);
+        timer.stop(Stage.LOAD, metrics);
+        int imageResolution = Math.min(resolution, Math.min(image.getWidth(), image.getHeight()));
+        AsciiArtAlgorithm algorithm = new AsciiArtAlgorithm(image, matcherOf(chars, rounder), imageResolution);
+        algorithm.setMetrics(metrics);
+        algorithm.setMatching(match);
+        char[][] asciiArt = algorithm.run();
+        timer = new StageTimer();
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        if (output.equals("html")) {
+            AsciiOutput html = new HtmlAsciiOutput(response, FONT_NAME);
+            html.out(asciiArt);
+        } else {
+            AsciiOutput text = new ConsoleAsciiOutput(response);
+            text.out(asciiArt);
+        }
+        timer.stop(Stage.OUTPUT, metrics);
+        send(exchange, OK, output.equals("html") ? "text/html" : "text/plain", response.toByteArray());
+        latencies.record(System.nanoTime() - start);
+    }
+
+    /**
+     * decodes the image of a request, its size is read from the header first,
+     * so an image of more than maxPixels pixels is never decoded.
+     * @param exchange the exchange, answered when the image is not decoded
+     * @param body     the image file
+     * @return the image, or null if the request was answered instead
+     * @throws IOException if the response cannot be sent
+     * */
+    private BufferedImage decode(HttpExchange exchange, byte[] body) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(body))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                send(exchange, BAD_REQUEST, "text/plain", "Did not convert, unsupported image format.\n");
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > maxPixels) {
+                    send(exchange, TOO_LARGE, "text/plain", "Did not convert, the image has too many pixels.\n");
+                    return null;
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IIOException e) {
+            send(exchange, BAD_REQUEST, "text/plain", "Did not convert, the image is corrupt.\n");
+            return null;
+        }
+    }
+
+    /**
+     * returns the shared matcher of a char set and rounding, creating it when it is not cached.
+     * the least recently used matcher is dropped beyond MAX_MATCHERS, the lock is not held while
+     * a matcher is created, so two requests may create the same matcher and one is kept.
+     * requests only read the snapshot of a shared matcher, which is never changed after it is created.
+     * @param chars   the char set, sorted and deduplicated
+     * @param rounder the rounding method
+     * @return the matcher
+     * */
+    private SubImgCharMatcher matcherOf(char[] chars, String rounder) {
+        String key = new String(chars) + '\u0000' + rounder;
+        synchronized (matchers) {
+            SubImgCharMatcher matcher = matchers.get(key);
+            if (matcher != null) {
+                return matcher;
+            }
+        }
+        SubImgCharMatcher matcher = new SubImgCharMatcher(chars);
+        matcher.setRounder(rounder);
+        synchronized (matchers) {
+            SubImgCharMatcher raced = matchers.putIfAbsent(key, matcher);
+            return raced != null ? raced : matcher;
+        }
+    }
+
+    /**
+     * sorts and deduplicates a char set, so every spelling of a set shares one matcher.
+     * @param chars the char set
+     * @return the distinct chars in ascending order
+     * */
+    private static char[] canonicalChars(char[] chars) {
+        char[] sorted = chars.clone();
+        Arrays.sort(sorted);
+        int distinct = 0;
+        for (char c : sorted) {
+            if (distinct == 0 || sorted[distinct - 1] != c) {
+                sorted[distinct++] = c;
+            }
+        }
+        return Arrays.copyOf(sorted, distinct);
+    }
+
+    /**
+     * handles a metrics request.
+     * @param exchange the exchange
+     * @throws IOException if the response cannot be sent
+     * */
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String report = String.format(Locale.ROOT,
+                    "requests %d%nrejected %d%nfailed %d%nin-flight %d%nlatency %s%n",
+                    requests.get(), rejected.get(), failed.get(),
+                    maxConcurrent - admission.availablePermits(), latencies.summary()) + metrics.summary();
+            send(exchange, OK, "text/plain", report);
+        }
+    }
+
+    /**
+     * reads a request body up to the size limit.
+     * @param in the body
+     * @return the bytes of the body, or null if it is larger than the limit
+     * @throws IOException if the body cannot be read
+     * */
+    private byte[] readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+            if (body.size() + read > maxBytes) {
+                return null;
+            }
+            body.write(buffer, 0, read);
+        }
+        return body.toByteArray();
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        send(exchange, status, contentType, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
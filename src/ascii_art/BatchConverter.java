@@ -0,0 +1,275 @@
+package ascii_art;
+
+import ascii_output.AsciiOutput;
+import ascii_output.ConsoleAsciiOutput;
+import ascii_output.HtmlAsciiOutput;
+import image.BandBrightnessReader;
+import image.DecodedPixelCache;
+import image.Image;
+import image_char_matching.GlyphCache;
+import image_char_matching.SubImgCharMatcher;
+
+import javax.imageio.ImageIO;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Headless batch conversion of many images.
+ * usage: java ascii_art.BatchConverter [options] (directory | image | @listFile)...
+ * options:
+ *   --res N                       the resolution, a power of two (default 128),
+ *                                 an image it does not fit, as in Shell, fails to convert
+ *   --chars all | space | a-z | chars
+ *                                 the char set (default 0-9)
+ *   --round abs | up | down       the rounding method (default abs)
+ *   --output console | html | html.gz
+ *                                 writes name.txt, name.html or name.html.gz next to each image
+ *                                 (default console)
+ *   --threads N                   the number of worker threads (default: available processors)
+ * All the workers share one char set matcher and glyph cache.
+ * The system properties glyph.cache, pixel.cache, pixel.cache.budget and stream.pixels work as in Shell.
+ * */
+public class BatchConverter {
+    private static final int DEFAULT_RES = 128;
+    private static final String DEFAULT_CHARS = "0-9";
+    private static final String FONT_NAME = "Courier New";
+    private static final String LIST_PREFIX = "@";
+    private static final String GLYPH_CACHE_PROPERTY = "glyph.cache";
+    private static final String PIXEL_CACHE_PROPERTY = "pixel.cache";
+    private static final String PIXEL_CACHE_BUDGET_PROPERTY = "pixel.cache.budget";
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final SubImgCharMatcher subImageCharMatcher;
+    private final int resolution;
+    private final String output;
+    private final int threads;
+    private DecodedPixelCache pixelCache = null;
+    private final LatencyRecorder latencies = new LatencyRecorder();
+    private final ConversionMetrics metrics = new StageStatistics();
+    private final AtomicInteger failures = new AtomicInteger();
+
+    /**
+     * main method of the batch conversion.
+     * @param args see the class comment
+     * */
+    public static void main(String[] args) {
+        int resolution = DEFAULT_RES;
+        String chars = DEFAULT_CHARS;
+        String round = "abs";
+        String output = "console";
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> inputs = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--res" -> resolution = Integer.parseInt(args[++i]);
+                    case "--chars" -> chars = args[++i];
+                    case "--round" -> round = args[++i];
+                    case "--output" -> output = args[++i];
+                    case "--threads" -> threads = Integer.parseInt(args[++i]);
+                    default -> inputs.add(args[i]);
+                }
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            System.err.println("Did not run due to incorrect format.");
+            return;
+        }
+        String rounder = switch (round) {
+            case "up" -> "upper";
+            case "down" -> "lower";
+            case "abs" -> "abs";
+            default -> null;
+        };
+        if (rounder == null || !(output.equals("console") || output.equals("html") || output.equals("html.gz")) || threads < 1
+                || resolution < 1 || Integer.bitCount(resolution) != 1 || inputs.isEmpty()) {
+            System.err.println("Did not run due to incorrect format.");
+            return;
+        }
+        String glyphCacheFile = System.getProperty(GLYPH_CACHE_PROPERTY);
+        String pixelCacheDirectory = System.getProperty(PIXEL_CACHE_PROPERTY);
+        try {
+            Shell.loadGlyphCache(glyphCacheFile);
+            SubImgCharMatcher matcher = new SubImgCharMatcher(CharSetParser.parseOrChars(chars));
+            matcher.setRounder(rounder);
+            BatchConverter converter = new BatchConverter(matcher, resolution, output, threads);
+            if (pixelCacheDirectory != null) {
+                converter.setPixelCache(new DecodedPixelCache(Path.of(pixelCacheDirectory),
+                        Long.getLong(PIXEL_CACHE_BUDGET_PROPERTY, DecodedPixelCache.DEFAULT_BUDGET)));
+            }
+            converter.convertAll(collectImages(inputs));
+            if (glyphCacheFile != null) {
+                GlyphCache.getDefault().save(Path.of(glyphCacheFile));
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to run the batch conversion: " + e.getMessage());
+        }
+    }
+
+    /**
+     * A constructor for BatchConverter class
+     * @param subImageCharMatcher the matcher shared by all the workers, every image maps through one snapshot of it
+     * @param resolution          the resolution of the ascii art
+     * @param output              "console" for text files, "html" for html files, "html.gz" for gzipped html files
+     * @param threads             the number of worker threads
+     * */
+    public BatchConverter(SubImgCharMatcher subImageCharMatcher, int resolution, String output, int threads) {
+        this.subImageCharMatcher = subImageCharMatcher;
+        this.resolution = resolution;
+        this.output = output;
+        this.threads = threads;
+    }
+
+    /**
+     * sets the cache of decoded images.
+     * @param pixelCache the cache, or null to decode every image
+     * */
+    public void setPixelCache(DecodedPixelCache pixelCache) {
+        this.pixelCache = pixelCache;
+    }
+
+    /**
+     * converts all the images on a bounded pool and prints the throughput and latency percentiles.
+     * @param images the images to convert
+     * */
+    public void convertAll(List<Path> images) {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        for (Path image : images) {
+            pool.execute(() -> convert(image));
+        }
+        pool.shutdown();
+        try {
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        double seconds = (System.nanoTime() - start) / NANOS_PER_SECOND;
+        int converted = latencies.getCount();
+        System.out.printf(Locale.ROOT, "Converted %d images (%d failed) in %.2fs, %.2f images/s%n",
+                converted, failures.get(), seconds, converted / seconds);
+        System.out.println("Latency " + latencies.summary());
+        System.out.print(metrics.summary());
+    }
+
+    /**
+     * getMetrics method
+     * @return the metrics of the stages of all the conversions
+     * */
+    public ConversionMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * converts one image, writing the result next to it.
+     * @param path the image
+     * */
+    private void convert(Path path) {
+        long start = System.nanoTime();
+        try {
+            char[][] asciiArt = asciiArtOf(path);
+            StageTimer timer = new StageTimer();
+            String base = outputBase(path);
+            if (output.startsWith("html")) {
+                new HtmlAsciiOutput(base + "." + output, FONT_NAME).out(asciiArt);
+            } else {
+                try (OutputStream stream = new FileOutputStream(base + ".txt")) {
+                    AsciiOutput text = new ConsoleAsciiOutput(stream);
+                    text.out(asciiArt);
+                }
+            }
+            timer.stop(Stage.OUTPUT, metrics);
+            latencies.record(System.nanoTime() - start);
+        } catch (IOException | RuntimeException e) {
+            failures.incrementAndGet();
+            System.err.println("Failed to convert " + path + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * converts one image to ascii art, a large image is streamed band by band instead of decoded whole.
+     * @param path the image
+     * @return the ascii art
+     * @throws IOException if the image cannot be read
+     * @throws IllegalArgumentException if the resolution does not fit the image
+     * */
+    private char[][] asciiArtOf(Path path) throws IOException {
+        int width;
+        int height;
+        try (BandBrightnessReader reader = new BandBrightnessReader(path.toString())) {
+            width = reader.getWidth();
+            height = reader.getHeight();
+        }
+        if (!AsciiArtAlgorithm.fitsImage(resolution, width, height)) {
+            throw new IllegalArgumentException("the resolution " + resolution + " does not fit a "
+                    + width + "x" + height + " image");
+        }
+        StageTimer timer = new StageTimer();
+        if (StreamingAsciiArt.isLarge(width, height)) {
+            char[][] asciiArt = new StreamingAsciiArt(subImageCharMatcher).convert(path.toString(), resolution);
+            timer.stop(Stage.BRIGHTNESS, metrics); // decoding and matching interleave band by band
+            return asciiArt;
+        }
+        Image image = pixelCache == null ? new Image(path.toString()) : pixelCache.load(path.toString());
+        timer.stop(Stage.LOAD, metrics);
+        AsciiArtAlgorithm algorithm = new AsciiArtAlgorithm(image, subImageCharMatcher, resolution);
+        algorithm.setMetrics(metrics);
+        return algorithm.run();
+    }
+
+    /**
+     * collects the images of the inputs, a directory gives all its readable images,
+     * an input starting with '@' names a file listing image paths, one per line.
+     * @param inputs the inputs
+     * @return the images
+     * @throws IOException if a directory or list cannot be read
+     * */
+    private static List<Path> collectImages(List<String> inputs) throws IOException {
+        Set<String> suffixes = Arrays.stream(ImageIO.getReaderFileSuffixes())
+                .map(suffix -> suffix.toLowerCase(Locale.ROOT)).collect(Collectors.toSet());
+        List<Path> images = new ArrayList<>();
+        for (String input : inputs) {
+            if (input.startsWith(LIST_PREFIX)) {
+                for (String line : Files.readAllLines(Path.of(input.substring(LIST_PREFIX.length())))) {
+                    if (!line.isBlank()) {
+                        images.add(Path.of(line.trim()));
+                    }
+                }
+            } else if (Files.isDirectory(Path.of(input))) {
+                try (Stream<Path> files = Files.list(Path.of(input))) {
+                    files.filter(file -> suffixes.contains(suffixOf(file))).sorted().forEach(images::add);
+                }
+            } else {
+                images.add(Path.of(input));
+            }
+        }
+        return images;
+    }
+
+    private static String suffixOf(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    private static String outputBase(Path image) {
+        String name = image.toString();
+        int dot = name.lastIndexOf('.');
+        return dot > name.lastIndexOf(File.separatorChar) ? name.substring(0, dot) : name;
+    }
+}
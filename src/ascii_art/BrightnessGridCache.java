@@ -0,0 +1,102 @@
+package ascii_art;
+
+import image.BrightnessGrid;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A least-recently-used cache of tile brightness grids,
+ * keyed by the identity of their source, the image or the path of a streamed image, and the resolution.
+ * The cache keeps the total size of its grids under a memory budget.
+ */
+public class BrightnessGridCache {
+    private static final long BYTES_PER_TILE = Double.BYTES;
+    private static final long ENTRY_OVERHEAD = 64;
+    /** the default memory budget, in bytes */
+    public static final long DEFAULT_BUDGET = 64L * 1024 * 1024;
+
+    private final LinkedHashMap<Key, BrightnessGrid> grids = new LinkedHashMap<>(16, 0.75f, true);
+    private final long budget;
+    private long usedBytes = 0;
+
+    /**
+     * A key of the cache, sources are compared by identity.
+     * @param source     the image or path the grid was computed of
+     * @param resolution the resolution of the grid
+     */
+    private record Key(Object source, int resolution) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other && other.source == source && other.resolution == resolution;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(source) * 31 + resolution;
+        }
+    }
+
+    /**
+     * creates a cache with the default memory budget.
+     * */
+    public BrightnessGridCache() {
+        this(DEFAULT_BUDGET);
+    }
+
+    /**
+     * creates a cache.
+     * @param budget the maximal number of bytes the cached grids may take
+     * */
+    public BrightnessGridCache(long budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * get method
+     * @param source     the image the grid was computed of, or the path it was streamed from
+     * @param resolution the resolution of the grid
+     * @return the cached grid, or null if it is not cached
+     * */
+    public synchronized BrightnessGrid get(Object source, int resolution) {
+        return grids.get(new Key(source, resolution));
+    }
+
+    /**
+     * put method
+     * caches a grid, evicting the least recently used grids if the budget is exceeded.
+     * a grid larger than the whole budget is not cached.
+     * @param source     the image the grid was computed of, or the path it was streamed from
+     * @param resolution the resolution of the grid
+     * @param grid       the grid to cache
+     * */
+    public synchronized void put(Object source, int resolution, BrightnessGrid grid) {
+        long size = sizeOf(grid);
+        if (size > budget) {
+            return;
+        }
+        BrightnessGrid previous = grids.put(new Key(source, resolution), grid);
+        if (previous != null) {
+            usedBytes -= sizeOf(previous);
+        }
+        usedBytes += size;
+        Iterator<Map.Entry<Key, BrightnessGrid>> eldest = grids.entrySet().iterator();
+        while (usedBytes > budget && eldest.hasNext()) {
+            usedBytes -= sizeOf(eldest.next().getValue());
+            eldest.remove();
+        }
+    }
+
+    /**
+     * getUsedBytes method
+     * @return the number of bytes the cached grids take
+     * */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    private static long sizeOf(BrightnessGrid grid) {
+        return (long) grid.getRows() * grid.getCols() * BYTES_PER_TILE + ENTRY_OVERHEAD;
+    }
+}
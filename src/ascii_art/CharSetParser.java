@@ -0,0 +1,53 @@
+package ascii_art;
+
+/**
+ * CharSetParser class
+ * parses the char sets of the shell, the batch converter, the frame pipeline and the server:
+ * a single char, "all" for the printable ASCII chars, "space", or a range such as "a-z" in either order.
+ * */
+final class CharSetParser {
+    private static final int MIN_CHAR = 32;
+    private static final int MAX_CHAR = 127;
+    private static final String RANGE = ".-.";
+    private static final int LAST_INDEX = 2;
+
+    private CharSetParser() {
+    }
+
+    /**
+     * parses a char set.
+     * @param value the char set
+     * @return the chars, or null if the value is not in one of the formats
+     * */
+    static char[] parse(String value) {
+        StringBuilder chars = new StringBuilder();
+        if (value.length() == 1) {
+            chars.append(value);
+        } else if (value.equals("all")) {
+            for (int c = MIN_CHAR; c < MAX_CHAR; c++) {
+                chars.append((char) c);
+            }
+        } else if (value.equals("space")) {
+            chars.append(' ');
+        } else if (value.matches(RANGE)) {
+            char start = (char) Math.min(value.charAt(0), value.charAt(LAST_INDEX));
+            char end = (char) Math.max(value.charAt(0), value.charAt(LAST_INDEX));
+            for (char c = start; c <= end; c++) {
+                chars.append(c);
+            }
+        } else {
+            return null;
+        }
+        return chars.toString().toCharArray();
+    }
+
+    /**
+     * parses a char set, a value in none of the formats of parse is the chars themselves.
+     * @param value the char set
+     * @return the chars
+     * */
+    static char[] parseOrChars(String value) {
+        char[] chars = parse(value);
+        return chars != null ? chars : value.toCharArray();
+    }
+}
@@ -0,0 +1,44 @@
+package ascii_art;
+
+/**
+ * ConversionMetrics interface
+ * Collects the wall time and the allocated bytes of the stages of conversions,
+ * so a shell, batch or server can report or export them.
+ * Implementations must accept records from any number of threads.
+ * */
+public interface ConversionMetrics {
+    /**
+     * records one run of a stage.
+     * @param stage the stage
+     * @param nanos the wall time of the run in nanoseconds
+     * @param bytes the bytes allocated by the thread of the run, -1 if unknown
+     * */
+    void record(Stage stage, long nanos, long bytes);
+
+    /**
+     * getCount method
+     * @param stage the stage
+     * @return the number of recorded runs of the stage
+     * */
+    long getCount(Stage stage);
+
+    /**
+     * getTotalNanos method
+     * @param stage the stage
+     * @return the total wall time of the recorded runs of the stage in nanoseconds
+     * */
+    long getTotalNanos(Stage stage);
+
+    /**
+     * getTotalBytes method
+     * @param stage the stage
+     * @return the total bytes allocated by the recorded runs of the stage
+     * */
+    long getTotalBytes(Stage stage);
+
+    /**
+     * summary method
+     * @return one line per stage with its runs, total and mean time and mean allocation
+     * */
+    String summary();
+}
@@ -0,0 +1,463 @@
+package ascii_art;
+
+import ascii_output.AnimatedHtmlAsciiOutput;
+import ascii_output.AnsiAsciiOutput;
+import ascii_output.AsciiOutput;
+import ascii_output.ConsoleAsciiOutput;
+import image.BrightnessGrid;
+import image.Image;
+import image.ImageProcessor;
+import image.LuminanceTable;
+import image_char_matching.MatcherSnapshot;
+import image_char_matching.SubImgCharMatcher;
+import org.w3c.dom.Node;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Function;
+
+/**
+ * Converts multi-frame sources, animated GIFs (or any multi-image format ImageIO reads)
+ * and numbered image sequences, through a staged pipeline.
+ * Decoding, brightness, char mapping and rendering each run on their own thread,
+ * connected by bounded queues, so consecutive frames overlap.
+ * usage: java ascii_art.FramePipeline [--res N] [--chars spec] [--output console | html | ansi]
+ *        [--delay ms] [--queue N] (animation file | sequence pattern such as frame%03d.png)
+ * The ansi output plays the frames in color in the terminal, rewriting only the cells that changed.
+ * */
+public class FramePipeline {
+    private static final int DEFAULT_RES = 64;
+    private static final int DEFAULT_QUEUE = 4;
+    private static final int DEFAULT_DELAY_MS = 100;
+    private static final String FONT_NAME = "Courier New";
+    private static final String SEQUENCE_MARK = "%";
+    private static final int MAX_FIRST_INDEX = 1;
+    private static final String GIF_FORMAT = "javax_imageio_gif_image_1.0";
+    private static final String GIF_STREAM_FORMAT = "javax_imageio_gif_stream_1.0";
+    private static final double NANOS_PER_SECOND = 1e9;
+    private static final Frame<?> END = new Frame<>(-1, null);
+
+    private final SubImgCharMatcher subImageCharMatcher;
+    private final int resolution;
+    private final int queueCapacity;
+    private final List<PipelineStage<?, ?>> stages = new ArrayList<>();
+    private long wallNanos = 0;
+    private boolean color = false;
+
+    /**
+     * A frame travelling through the pipeline.
+     * @param index   the index of the frame in the source
+     * @param payload the frame as the previous stage produced it
+     */
+    private record Frame<T>(int index, T payload) {
+    }
+
+    /**
+     * The tiles of a frame.
+     * @param grid   the brightness of every tile
+     * @param colors the packed RGB color of every tile, or null without colors
+     */
+    private record Tiles(BrightnessGrid grid, int[][] colors) {
+    }
+
+    /**
+     * The ascii art of a frame.
+     * @param chars  the chars
+     * @param colors the packed RGB color of every char, or null without colors
+     */
+    private record AsciiFrame(char[][] chars, int[][] colors) {
+    }
+
+    /**
+     * main method of the frame pipeline.
+     * @param args see the class comment
+     * */
+    public static void main(String[] args) {
+        int resolution = DEFAULT_RES;
+        String chars = "all";
+        String output = "console";
+        int delay = DEFAULT_DELAY_MS;
+        int queue = DEFAULT_QUEUE;
+        String source = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--res" -> resolution = Integer.parseInt(args[++i]);
+                    case "--chars" -> chars = args[++i];
+                    case "--output" -> output = args[++i];
+                    case "--delay" -> delay = Integer.parseInt(args[++i]);
+                    case "--queue" -> queue = Integer.parseInt(args[++i]);
+                    default -> source = args[i];
+                }
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            source = null;
+        }
+        if (source == null || resolution < 1 || queue < 1
+                || !(output.equals("console") || output.equals("html") || output.equals("ansi"))) {
+            System.err.println("Did not run due to incorrect format.");
+            return;
+        }
+        FramePipeline pipeline = new FramePipeline(new SubImgCharMatcher(CharSetParser.parseOrChars(chars)),
+                resolution, queue);
+        try {
+            if (output.equals("html")) {
+                String name = source.contains(SEQUENCE_MARK) ? "out" : source.replaceFirst("\\.[^.]*$", "");
+                try (AnimatedHtmlAsciiOutput html = new AnimatedHtmlAsciiOutput(name + ".html", FONT_NAME, delay)) {
+                    pipeline.run(source, html);
+                }
+            } else if (output.equals("ansi")) {
+                pipeline.setColor(true);
+                pipeline.run(source, new AnsiAsciiOutput());
+            } else {
+                pipeline.run(source, new ConsoleAsciiOutput());
+            }
+            System.out.println(pipeline.report());
+        } catch (IOException e) {
+            System.err.println("Failed to convert " + source + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * A constructor for FramePipeline class
+     * @param subImageCharMatcher the matcher of the char set, every frame maps through one snapshot of it
+     * @param resolution          the resolution of the ascii art
+     * @param queueCapacity       the capacity of each queue between stages
+     * */
+    public FramePipeline(SubImgCharMatcher subImageCharMatcher, int resolution, int queueCapacity) {
+        this.subImageCharMatcher = subImageCharMatcher;
+        this.resolution = resolution;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * setColor method
+     * @param color true to hand the output the average color of every tile along with the chars
+     * */
+    public void setColor(boolean color) {
+        this.color = color;
+    }
+
+    /**
+     * converts every frame of the source, in order, to the output.
+     * @param source an animation file, or a sequence pattern such as frame%03d.png
+     *               numbered from 0 or 1 up to the first missing file
+     * @param output receives the frames in order
+     * @throws IOException if a frame cannot be decoded
+     * */
+    public void run(String source, AsciiOutput output) throws IOException {
+        stages.clear();
+        BlockingQueue<Frame<?>> decoded = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Frame<?>> measured = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Frame<?>> mapped = new ArrayBlockingQueue<>(queueCapacity);
+        PipelineStage<Void, Image> decode = new PipelineStage<>("decode", null, decoded, null);
+        boolean withColors = color;
+        PipelineStage<Image, Tiles> brightness = new PipelineStage<>("brightness", decoded, measured,
+                image -> measureTiles(image, withColors));
+        PipelineStage<Tiles, AsciiFrame> map = new PipelineStage<>("map", measured, mapped,
+                tiles -> new AsciiFrame(mapGrid(tiles.grid()), tiles.colors()));
+        PipelineStage<AsciiFrame, Void> render = new PipelineStage<>("render", mapped, null, frame -> {
+            if (frame.colors() != null) {
+                output.out(frame.chars(), frame.colors());
+            } else {
+                output.out(frame.chars());
+            }
+            return null;
+        });
+        stages.addAll(List.of(decode, brightness, map, render));
+
+        List<Thread> threads = new ArrayList<>();
+        threads.add(new Thread(() -> decode.runSource(source), "pipeline-decode"));
+        for (PipelineStage<?, ?> stage : List.of(brightness, map, render)) {
+            threads.add(new Thread(stage::runWorker, "pipeline-" + stage.name));
+        }
+        long start = System.nanoTime();
+        threads.forEach(Thread::start);
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            threads.forEach(Thread::interrupt);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        }
+        wallNanos = System.nanoTime() - start;
+        for (PipelineStage<?, ?> stage : stages) {
+            if (stage.failure != null) {
+                throw new IOException(stage.failure.getMessage(), stage.failure);
+            }
+        }
+    }
+
+    /**
+     * report method
+     * @return the fps of the last run, and the busy fps and queue depths of each stage
+     * */
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        int frames = stages.isEmpty() ? 0 : stages.get(stages.size() - 1).frames;
+        report.append(String.format(Locale.ROOT, "%d frames in %.2fs, %.2f fps%n",
+                frames, wallNanos / NANOS_PER_SECOND, frames * NANOS_PER_SECOND / Math.max(1, wallNanos)));
+        for (PipelineStage<?, ?> stage : stages) {
+            report.append(String.format(Locale.ROOT, "  %-10s busy %8.2f fps", stage.name,
+                    stage.frames * NANOS_PER_SECOND / Math.max(1, stage.busyNanos)));
+            if (stage.out != null) {
+                report.append(String.format(Locale.ROOT, "   out queue max %d avg %.2f",
+                        stage.maxDepth, stage.frames == 0 ? 0 : (double) stage.depthSum / stage.frames));
+            }
+            report.append(System.lineSeparator());
+        }
+        return report.toString();
+    }
+
+    /**
+     * measures the tiles of a frame, their colors come from the same pass over the pixels.
+     * @param image      the frame
+     * @param withColors true to measure the colors of the tiles too
+     * @return the tiles
+     * */
+    private Tiles measureTiles(Image image, boolean withColors) {
+        LuminanceTable table = ImageProcessor.buildLuminanceTable(ImageProcessor.padImageWithWhite(image), withColors);
+        int rows = Math.min(resolution, Math.min(image.getWidth(), image.getHeight()));
+        BrightnessGrid grid = ImageProcessor.calculateBrightnessGrid(table, rows);
+        if (!withColors) {
+            return new Tiles(grid, null);
+        }
+        int[][] colors = new int[rows][grid.getCols()];
+        ImageProcessor.calculateColorRows(table, rows, 0, rows, colors);
+        return new Tiles(grid, colors);
+    }
+
+    /**
+     * maps a brightness grid to chars.
+     * @param grid the brightness grid
+     * @return the ascii art
+     * */
+    private char[][] mapGrid(BrightnessGrid grid) {
+        MatcherSnapshot snapshot = subImageCharMatcher.getSnapshot();
+        char[][] asciiArt = new char[grid.getRows()][grid.getCols()];
+        for (int row = 0; row < grid.getRows(); row++) {
+            for (int col = 0; col < grid.getCols(); col++) {
+                asciiArt[row][col] = snapshot.getCharByFixedBrightness(grid.getFixed(row, col));
+            }
+        }
+        return asciiArt;
+    }
+
+    /**
+     * One stage of the pipeline, taking frames from its input queue and putting
+     * the results on its output queue, with its busy time and output queue depth.
+     * */
+    private class PipelineStage<I, O> {
+        private final String name;
+        private final BlockingQueue<Frame<?>> in;
+        private final BlockingQueue<Frame<?>> out;
+        private final Function<I, O> work;
+        private volatile int frames = 0;
+        private volatile long busyNanos = 0;
+        private volatile int maxDepth = 0;
+        private volatile long depthSum = 0;
+        private volatile Throwable failure = null;
+
+        PipelineStage(String name, BlockingQueue<Frame<?>> in, BlockingQueue<Frame<?>> out, Function<I, O> work) {
+            this.name = name;
+            this.in = in;
+            this.out = out;
+            this.work = work;
+        }
+
+        /**
+         * takes frames until the end of the stream, a failure of any kind still passes the end downstream.
+         * */
+        @SuppressWarnings("unchecked")
+        void runWorker() {
+            try {
+                boolean failed = false;
+                for (Frame<?> frame = in.take(); frame != END; frame = in.take()) {
+                    if (failed) {
+                        continue; // drain, so the upstream stage is never blocked
+                    }
+                    O result;
+                    try {
+                        long start = System.nanoTime();
+                        result = work.apply((I) frame.payload());
+                        busyNanos += System.nanoTime() - start;
+                    } catch (Throwable e) {
+                        failure = e;
+                        failed = true;
+                        continue;
+                    }
+                    emit(new Frame<>(frame.index(), result));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                finish();
+            }
+        }
+
+        /**
+         * decodes the frames of the source, this is the first stage.
+         * @param source the animation file or sequence pattern
+         * */
+        void runSource(String source) {
+            try {
+                if (source.contains(SEQUENCE_MARK)) {
+                    decodeSequence(source);
+                } else {
+                    decodeAnimation(source);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                failure = e;
+            } finally {
+                finish();
+            }
+        }
+
+        /**
+         * passes the end of the stream downstream.
+         * */
+        private void finish() {
+            try {
+                emit(END);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void decodeSequence(String pattern) throws IOException, InterruptedException {
+            int index = 0;
+            while (index <= MAX_FIRST_INDEX && !new File(String.format(pattern, index)).exists()) {
+                index++;
+            }
+            for (File file = new File(String.format(pattern, index)); file.exists();
+                 file = new File(String.format(pattern, ++index))) {
+                long start = System.nanoTime();
+                Image image = new Image(file.getPath());
+                busyNanos += System.nanoTime() - start;
+                emit(new Frame<>(index, image));
+            }
+        }
+
+        private void decodeAnimation(String path) throws IOException, InterruptedException {
+            try (ImageInputStream input = ImageIO.createImageInputStream(new File(path))) {
+                Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+                if (readers == null || !readers.hasNext()) {
+                    throw new IOException("Unsupported image format: " + path);
+                }
+                ImageReader reader = readers.next();
+                try {
+                    reader.setInput(input, false, false);
+                    int count = reader.getNumImages(true);
+                    BufferedImage canvas = null;
+                    for (int index = 0; index < count; index++) {
+                        long start = System.nanoTime();
+                        BufferedImage frame = reader.read(index);
+                        if (canvas == null) {
+                            canvas = createCanvas(reader, frame);
+                        }
+                        Graphics2D graphics = canvas.createGraphics();
+                        int[] offset = frameOffset(reader.getImageMetadata(index));
+                        graphics.drawImage(frame, offset[0], offset[1], null);
+                        graphics.dispose();
+                        Image image = new Image(canvas);
+                        busyNanos += System.nanoTime() - start;
+                        emit(new Frame<>(index, image));
+                    }
+                } finally {
+                    reader.dispose();
+                }
+            }
+        }
+
+        private void emit(Frame<?> frame) throws InterruptedException {
+            if (out == null) {
+                if (frame != END) {
+                    frames++;
+                }
+                return;
+            }
+            out.put(frame);
+            if (frame != END) {
+                int depth = out.size();
+                maxDepth = Math.max(maxDepth, depth);
+                depthSum += depth;
+                frames++;
+            }
+        }
+    }
+
+    /**
+     * creates the canvas frames are drawn on, of the logical screen size of a GIF
+     * or of the first frame otherwise.
+     * @param reader the reader of the animation
+     * @param first  the first frame
+     * @return a white canvas
+     * @throws IOException if the metadata cannot be read
+     * */
+    private static BufferedImage createCanvas(ImageReader reader, BufferedImage first) throws IOException {
+        int width = first.getWidth();
+        int height = first.getHeight();
+        IIOMetadata metadata = reader.getStreamMetadata();
+        if (metadata != null && GIF_STREAM_FORMAT.equals(metadata.getNativeMetadataFormatName())) {
+            Node screen = findChild(metadata.getAsTree(GIF_STREAM_FORMAT), "LogicalScreenDescriptor");
+            if (screen != null) {
+                width = Math.max(width, attribute(screen, "logicalScreenWidth"));
+                height = Math.max(height, attribute(screen, "logicalScreenHeight"));
+            }
+        }
+        BufferedImage canvas = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = canvas.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+        return canvas;
+    }
+
+    /**
+     * finds where a GIF frame is drawn on the canvas, frames of other formats are drawn at the corner.
+     * frames are drawn over the previous ones, the GIF disposal methods are not applied.
+     * @param metadata the metadata of the frame
+     * @return the left and top offsets of the frame
+     * */
+    private static int[] frameOffset(IIOMetadata metadata) {
+        if (metadata != null && GIF_FORMAT.equals(metadata.getNativeMetadataFormatName())) {
+            Node descriptor = findChild(metadata.getAsTree(GIF_FORMAT), "ImageDescriptor");
+            if (descriptor != null) {
+                return new int[]{attribute(descriptor, "imageLeftPosition"),
+                        attribute(descriptor, "imageTopPosition")};
+            }
+        }
+        return new int[]{0, 0};
+    }
+
+    private static Node findChild(Node root, String name) {
+        for (Node child = root.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeName().equals(name)) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    private static int attribute(Node node, String name) {
+        Node attribute = node.getAttributes().getNamedItem(name);
+        return attribute == null ? 0 : Integer.parseInt(attribute.getNodeValue());
+    }
+}
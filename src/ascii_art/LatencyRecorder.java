@@ -0,0 +1,114 @@
+package ascii_art;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LatencyRecorder class
+ * Records latencies from any number of threads and reports their percentiles.
+ * The latencies are counted in a fixed histogram of log-linear buckets, every power of two split into
+ * SUB_BUCKETS buckets, so the memory never grows, recording is one atomic increment without locks,
+ * and a report reads the counts without ever blocking the threads that record.
+ * A reported percentile is the upper edge of its bucket, within 1 / SUB_BUCKETS (about 3%) of the exact value.
+ * */
+public class LatencyRecorder {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = SUB_BUCKETS + (Long.SIZE - 1 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+    private static final double NANOS_PER_MILLI = 1e6;
+    private static final double[] REPORTED_PERCENTILES = {50, 90, 99};
+    private static final double PERCENT = 100.0;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * records one latency.
+     * @param nanos the latency in nanoseconds
+     * */
+    public void record(long nanos) {
+        long latency = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(latency));
+        max.accumulateAndGet(latency, Math::max);
+        count.incrementAndGet();
+    }
+
+    /**
+     * getCount method
+     * @return the number of recorded latencies
+     * */
+    public int getCount() {
+        return (int) count.get();
+    }
+
+    /**
+     * percentile method
+     * latencies recorded while the counts are read may or may not be included.
+     * @param percentile the percentile, between 0 and 100
+     * @return the latency at the percentile in nanoseconds (nearest rank, rounded up to the edge of its bucket
+     *         and at most the largest latency), 0 if nothing was recorded
+     * */
+    public long percentile(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            snapshot[bucket] = counts.get(bucket);
+            total += snapshot[bucket];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, Math.min(total, (long) Math.ceil(percentile / PERCENT * total)));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += snapshot[bucket];
+            if (seen >= rank) {
+                return Math.min(upperEdgeOf(bucket), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * summary method
+     * @return the p50, p90, p99 and max latencies in milliseconds
+     * */
+    public String summary() {
+        StringBuilder summary = new StringBuilder();
+        for (double percentile : REPORTED_PERCENTILES) {
+            summary.append(String.format(Locale.ROOT, "p%.0f=%.2fms ", percentile, percentile(percentile) / NANOS_PER_MILLI));
+        }
+        return summary.append(String.format(Locale.ROOT, "max=%.2fms", max.get() / NANOS_PER_MILLI)).toString();
+    }
+
+    /**
+     * finds the bucket of a latency, latencies below SUB_BUCKETS have a bucket each,
+     * larger ones share a bucket with the latencies of the same top SUB_BUCKET_BITS + 1 bits.
+     * @param latency the latency, not negative
+     * @return the bucket
+     * */
+    private static int bucketOf(long latency) {
+        if (latency < SUB_BUCKETS) {
+            return (int) latency;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(latency);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + (int) (latency >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * the largest latency of a bucket.
+     * @param bucket the bucket
+     * @return the largest latency counted in the bucket
+     * */
+    private static long upperEdgeOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        long lower = (long) (SUB_BUCKETS + (bucket - SUB_BUCKETS) % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
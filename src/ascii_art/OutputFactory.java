@@ -1,5 +1,6 @@
 package ascii_art;
 
+import ascii_output.AnsiAsciiOutput;
 import ascii_output.AsciiOutput;
 import ascii_output.ConsoleAsciiOutput;
 import ascii_output.HtmlAsciiOutput;
@@ -17,6 +18,7 @@ public class OutputFactory {
         return switch (outputType) {
             case "html" -> new HtmlAsciiOutput("out.html", "Courier New");
             case "console" -> new ConsoleAsciiOutput();
+            case "ansi" -> new AnsiAsciiOutput();
             default -> null;
         };
     }
@@ -1,6 +1,12 @@
 package ascii_art;
 
+import image.DecodedPixelCache;
+import image_char_matching.GlyphCache;
+import image_char_matching.SubImgCharMatcher;
+
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.function.Consumer;
 /**
  * Shell for the ASCII art algorithm.
@@ -11,7 +17,6 @@ public class Shell {
     private static final char[] STARTING_CHARS = new char[]{'0', '1', '2', '3', '4', '5' ,'6', '7', '8', '9'};
     private static final int MAX_CHAR = 127;
     private static final int MIN_CHAR = 32;
-    private static final int LAST_INDEX = 2;
     private static final int INCREASE_FACTOR = 2;
     private static final float DECREASE_FACTOR = 0.5f;
     private static final int ADD_SIZE = 4;
@@ -19,31 +24,74 @@ public class Shell {
     private static final int OUTPUT_SIZE = 7;
     private static final int RES_SIZE = 4;
     private static final int ROUND_SIZE = 6;
+    private static final int THREADS_SIZE = 8;
+    private static final int MATCH_SIZE = 6;
+    private static final int COLOR_SIZE = 6;
+    private static final int SIZE_SIZE = 5;
+    private static final String GLYPH_CACHE_PROPERTY = "glyph.cache";
+    private static final String PIXEL_CACHE_PROPERTY = "pixel.cache";
+    private static final String PIXEL_CACHE_BUDGET_PROPERTY = "pixel.cache.budget";
     private final AsciiArtAlgorithm asciiArtAlgorithm;
 
     /**
      * main method for the shell.
      * @param args the first argument should be the name of the image to be converted to ASCII art.
+     * When the system property glyph.cache names a file, the rendered glyphs are loaded from it
+     * on startup and saved back to it on exit.
+     * When the system property pixel.cache names a directory, the decoded image is cached there
+     * and mapped on the next launch instead of being decoded again,
+     * pixel.cache.budget limits the size of the cache in bytes.
+     * An image of more pixels than the system property stream.pixels is streamed instead,
+     * see StreamingAsciiArt.
      * */
     public static void main(String[] args) {
+        String glyphCacheFile = System.getProperty(GLYPH_CACHE_PROPERTY);
         try {
+            loadGlyphCache(glyphCacheFile);
             Shell shell = new Shell(args[0]);
             System.out.println("Enter a command:");
             System.out.print(">>> ");
             String input = KeyboardInput.readLine();
             shell.run(input);
+            if (glyphCacheFile != null) {
+                GlyphCache.getDefault().save(Path.of(glyphCacheFile));
+            }
         } catch (IOException e) {
             System.err.println("Failed to load image or initialize ASCII art algorithm: " + e.getMessage());
         }
     }
 
+    /**
+     * loads the rendered glyphs saved in a file into the default glyph cache.
+     * a missing, unreadable or corrupt file only warns, the glyphs are then rendered again.
+     * @param glyphCacheFile the file, or null for none
+     * */
+    static void loadGlyphCache(String glyphCacheFile) {
+        if (glyphCacheFile == null || !Files.exists(Path.of(glyphCacheFile))) {
+            return;
+        }
+        try {
+            GlyphCache.getDefault().load(Path.of(glyphCacheFile));
+        } catch (IOException e) {
+            System.err.println("Ignored the glyph cache " + glyphCacheFile + ": " + e.getMessage());
+        }
+    }
+
     /**
      * constructor for the shell.
      * @param imageName the name of the image to be converted to ASCII art.
      * @throws IOException if the image cannot be loaded.
      * */
     public Shell(String imageName) throws IOException {
-        this.asciiArtAlgorithm = new AsciiArtAlgorithm(imageName, STARTING_CHARS, DEFAULT_RES);
+        String pixelCacheDirectory = System.getProperty(PIXEL_CACHE_PROPERTY);
+        if (pixelCacheDirectory == null || StreamingAsciiArt.isLarge(imageName)) {
+            this.asciiArtAlgorithm = new AsciiArtAlgorithm(imageName, STARTING_CHARS, DEFAULT_RES);
+        } else {
+            long budget = Long.getLong(PIXEL_CACHE_BUDGET_PROPERTY, DecodedPixelCache.DEFAULT_BUDGET);
+            DecodedPixelCache pixelCache = new DecodedPixelCache(Path.of(pixelCacheDirectory), budget);
+            this.asciiArtAlgorithm = new AsciiArtAlgorithm(pixelCache.load(imageName),
+                    new SubImgCharMatcher(STARTING_CHARS), DEFAULT_RES);
+        }
     }
 
     /**
@@ -89,6 +137,20 @@ public class Shell {
                     String value = input.substring(ROUND_SIZE);
                     handleRounding(value);
                 }
+            } else if (input.startsWith("threads")) {
+                handleThreads(input);
+            } else if (input.startsWith("match")) {
+                if (input.length() <= MATCH_SIZE || !asciiArtAlgorithm.setMatching(input.substring(MATCH_SIZE))) {
+                    System.out.println(asciiArtAlgorithm.isStreaming() && input.endsWith("shape")
+                            ? "Did not change matching method, the image is too large to match by shape."
+                            : "Did not change matching method due to incorrect format.");
+                }
+            } else if (input.startsWith("size")) {
+                handleSize(input);
+            } else if (input.startsWith("color")) {
+                handleColor(input);
+            } else if (input.startsWith("stats")) {
+                System.out.print(asciiArtAlgorithm.getMetrics().summary());
             } else if (input.startsWith("asciiArt")) {
                 if (asciiArtAlgorithm.getCharSet().length <= 1) {
                     System.out.println("Did not execute. Charset is too small.");
@@ -119,6 +181,69 @@ public class Shell {
         }
     }
 
+    /**
+     * handles the input for the size command.
+     * @param input the input for the size command.
+     * The input should be in the format of "size <columns> <rows>"
+     * */
+    private void handleSize(String input) {
+        if (asciiArtAlgorithm.isStreaming()) {
+            System.out.println("Did not change size, the image is too large to tile by size.");
+            return;
+        }
+        String[] values = input.length() <= SIZE_SIZE ? new String[0] : input.substring(SIZE_SIZE).split(" ");
+        try {
+            if (values.length == 2
+                    && asciiArtAlgorithm.setSize(Integer.parseInt(values[0]), Integer.parseInt(values[1]))) {
+                System.out.println("Size set to " + values[0] + "x" + values[1]);
+                return;
+            }
+        } catch (NumberFormatException ignored) {
+            // reported below like any other bad value
+        }
+        System.out.println("Did not change size due to incorrect format.");
+    }
+
+    /**
+     * handles the input for the color command.
+     * @param input the input for the color command.
+     * The input should be in the format of "color on" or "color off"
+     * */
+    private void handleColor(String input) {
+        String value = input.length() <= COLOR_SIZE ? "" : input.substring(COLOR_SIZE);
+        switch (value) {
+            case "on" -> {
+                if (!asciiArtAlgorithm.setColor(true)) {
+                    System.out.println("Did not change color mode, the image is too large to color.");
+                }
+            }
+            case "off" -> asciiArtAlgorithm.setColor(false);
+            default -> System.out.println("Did not change color mode due to incorrect format.");
+        }
+    }
+
+    /**
+     * handles the input for the threads command.
+     * @param input the input for the threads command.
+     * The input should be in the format of "threads <number>", "threads" alone prints the current value
+     * */
+    private void handleThreads(String input) {
+        if (input.length() <= THREADS_SIZE) {
+            System.out.println("Threads set to " + asciiArtAlgorithm.getParallelism());
+            return;
+        }
+        String value = input.substring(THREADS_SIZE);
+        try {
+            if (asciiArtAlgorithm.setParallelism(Integer.parseInt(value))) {
+                System.out.println("Threads set to " + asciiArtAlgorithm.getParallelism());
+                return;
+            }
+        } catch (NumberFormatException ignored) {
+            // reported below like any other bad value
+        }
+        System.out.println("Did not change threads due to incorrect format.");
+    }
+
     /**
      * handles the input for the resolution command.
      * @param input the input for the resolution command.
@@ -168,28 +293,13 @@ public class Shell {
         if (input.isEmpty()) {
             return;
         }
-        if (input.length() == 1) {
-            charAction.accept(input.charAt(0));
-        } else if (input.startsWith("all")) {
-            for (int i = MIN_CHAR; i < MAX_CHAR; i++) {
-                charAction.accept((char) i);
-            }
-        } else if (input.startsWith("space")) {
-            charAction.accept(' ');
-        } else if (input.matches(".-.")) {
-            char start = input.charAt(0);
-            char end = input.charAt(LAST_INDEX);
-            if (start <= end) {
-                for (char c = start; c <= end; c++) {
-                    charAction.accept(c);
-                }
-            } else {
-                for (char c = start; c >= end; c--) {
-                    charAction.accept(c);
-                }
-            }
-        } else {
+        char[] chars = CharSetParser.parse(input);
+        if (chars == null) {
             System.out.printf("Did not %s due to incorrect format.%n", funcName);
+            return;
+        }
+        for (char c : chars) {
+            charAction.accept(c);
         }
     }
 }
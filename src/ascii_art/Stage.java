@@ -0,0 +1,38 @@
+package ascii_art;
+
+/**
+ * Stage enum
+ * The stages of a conversion, in the order they run.
+ * */
+public enum Stage {
+    /** decoding the image file. */
+    LOAD("load"),
+    /** padding the image with white to a power of two. */
+    PAD("pad"),
+    /** building the summed-area table of the luminance. */
+    LUMINANCE_TABLE("luminance table"),
+    /** computing the brightness of every tile. */
+    BRIGHTNESS("brightness"),
+    /** computing the shape of every tile. */
+    SHAPE("shape"),
+    /** computing the average color of every tile. */
+    COLOR("color"),
+    /** matching every tile to a char. */
+    MATCH("match"),
+    /** writing the ascii art. */
+    OUTPUT("output");
+
+    private final String label;
+
+    Stage(String label) {
+        this.label = label;
+    }
+
+    /**
+     * getLabel method
+     * @return the name of the stage in reports
+     * */
+    public String getLabel() {
+        return label;
+    }
+}
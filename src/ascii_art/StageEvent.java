@@ -0,0 +1,27 @@
+package ascii_art;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * StageEvent class
+ * A flight recorder event for one run of a conversion stage,
+ * the duration of the event is the wall time of the run.
+ * */
+@Name("ascii_art.Stage")
+@Label("Conversion Stage")
+@Category("ASCII Art")
+@Description("One run of a stage of an ascii art conversion")
+class StageEvent extends Event {
+    @Label("Stage")
+    String stage;
+
+    @Label("Allocated")
+    @Description("Bytes allocated by the thread of the run")
+    @DataAmount
+    long allocatedBytes;
+}
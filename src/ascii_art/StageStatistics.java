@@ -0,0 +1,65 @@
+package ascii_art;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * StageStatistics class
+ * ConversionMetrics that sums the records of every stage.
+ * */
+public class StageStatistics implements ConversionMetrics {
+    private static final double NANOS_PER_MILLI = 1e6;
+    private static final int STAGES = Stage.values().length;
+
+    private final LongAdder[] counts = newAdders();
+    private final LongAdder[] nanos = newAdders();
+    private final LongAdder[] bytes = newAdders();
+
+    @Override
+    public void record(Stage stage, long nanos, long bytes) {
+        counts[stage.ordinal()].increment();
+        this.nanos[stage.ordinal()].add(nanos);
+        if (bytes > 0) {
+            this.bytes[stage.ordinal()].add(bytes);
+        }
+    }
+
+    @Override
+    public long getCount(Stage stage) {
+        return counts[stage.ordinal()].sum();
+    }
+
+    @Override
+    public long getTotalNanos(Stage stage) {
+        return nanos[stage.ordinal()].sum();
+    }
+
+    @Override
+    public long getTotalBytes(Stage stage) {
+        return bytes[stage.ordinal()].sum();
+    }
+
+    @Override
+    public String summary() {
+        StringBuilder summary = new StringBuilder(String.format(Locale.ROOT,
+                "%-16s %8s %12s %12s %14s%n", "stage", "runs", "total ms", "mean ms", "mean bytes"));
+        for (Stage stage : Stage.values()) {
+            long count = getCount(stage);
+            if (count == 0) {
+                continue;
+            }
+            double total = getTotalNanos(stage) / NANOS_PER_MILLI;
+            summary.append(String.format(Locale.ROOT, "%-16s %8d %12.3f %12.3f %14d%n",
+                    stage.getLabel(), count, total, total / count, getTotalBytes(stage) / count));
+        }
+        return summary.toString();
+    }
+
+    private static LongAdder[] newAdders() {
+        LongAdder[] adders = new LongAdder[STAGES];
+        for (int i = 0; i < STAGES; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
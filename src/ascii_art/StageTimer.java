@@ -0,0 +1,56 @@
+package ascii_art;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * StageTimer class
+ * Measures one run of a stage on the current thread: its wall time, and the bytes the
+ * thread allocated, as reported by the HotSpot ThreadMXBean.
+ * Work that a stage hands to other threads is timed but its allocation is not counted.
+ * */
+class StageTimer {
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+    private static final long UNKNOWN = -1;
+
+    private final StageEvent event = new StageEvent();
+    private final long startBytes;
+    private final long startNanos;
+
+    /**
+     * starts the timer.
+     * */
+    StageTimer() {
+        event.begin();
+        startBytes = allocatedBytes();
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * stops the timer, records the run and emits its flight recorder event.
+     * @param stage   the stage that ran
+     * @param metrics the metrics to record the run in
+     * */
+    void stop(Stage stage, ConversionMetrics metrics) {
+        long nanos = System.nanoTime() - startNanos;
+        long bytes = startBytes == UNKNOWN ? UNKNOWN : allocatedBytes() - startBytes;
+        event.end();
+        if (event.shouldCommit()) {
+            event.stage = stage.getLabel();
+            event.allocatedBytes = bytes;
+            event.commit();
+        }
+        metrics.record(stage, nanos, bytes);
+    }
+
+    private static long allocatedBytes() {
+        return THREADS == null ? UNKNOWN : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                && threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+            return threads;
+        }
+        return null;
+    }
+}
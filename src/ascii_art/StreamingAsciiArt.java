@@ -0,0 +1,100 @@
+package ascii_art;
+
+import image.BandBrightnessReader;
+import image_char_matching.MatcherSnapshot;
+import image_char_matching.SubImgCharMatcher;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * StreamingAsciiArt class
+ * Converts an image file to ascii art one band of tile rows at a time,
+ * emitting each finished row, so images far larger than the heap can be converted.
+ * The chars are the ones AsciiArtAlgorithm maps the same image to by brightness.
+ * Images of more pixels than the system property stream.pixels (default 64M) are large,
+ * Shell and BatchConverter convert them this way instead of decoding them whole.
+ * */
+public class StreamingAsciiArt {
+    /** the default number of pixels above which an image is streamed */
+    public static final long DEFAULT_STREAMING_PIXELS = 64L * 1024 * 1024;
+    private static final String STREAMING_PIXELS_PROPERTY = "stream.pixels";
+
+    private final SubImgCharMatcher subImageCharMatcher;
+    private final long bandPixels;
+
+    /**
+     * A constructor for StreamingAsciiArt class
+     * @param subImageCharMatcher the matcher of the char set to convert with
+     * */
+    public StreamingAsciiArt(SubImgCharMatcher subImageCharMatcher) {
+        this(subImageCharMatcher, BandBrightnessReader.DEFAULT_BAND_PIXELS);
+    }
+
+    /**
+     * A constructor for StreamingAsciiArt class
+     * @param subImageCharMatcher the matcher of the char set to convert with
+     * @param bandPixels          the number of decoded pixels a band may hold
+     * */
+    public StreamingAsciiArt(SubImgCharMatcher subImageCharMatcher, long bandPixels) {
+        this.subImageCharMatcher = subImageCharMatcher;
+        this.bandPixels = bandPixels;
+    }
+
+    /**
+     * isLarge method
+     * @param width  the width of an image
+     * @param height the height of an image
+     * @return true if the image has more pixels than stream.pixels and should be streamed
+     * */
+    public static boolean isLarge(int width, int height) {
+        return (long) width * height > Long.getLong(STREAMING_PIXELS_PROPERTY, DEFAULT_STREAMING_PIXELS);
+    }
+
+    /**
+     * isLarge method, only the header of the image is read.
+     * @param imagePath the path of the image
+     * @return true if the image has more pixels than stream.pixels and should be streamed
+     * @throws IOException if the image cannot be read
+     * */
+    public static boolean isLarge(String imagePath) throws IOException {
+        try (BandBrightnessReader reader = new BandBrightnessReader(imagePath)) {
+            return isLarge(reader.getWidth(), reader.getHeight());
+        }
+    }
+
+    /**
+     * converts an image file, emitting each ascii art row as soon as it is finished.
+     * @param imagePath  the path of the image
+     * @param resolution the resolution of the ascii art
+     * @param rowSink    receives the rows in order from the top, each row is a new array
+     * @throws IOException if the image cannot be read
+     * */
+    public void convert(String imagePath, int resolution, Consumer<char[]> rowSink) throws IOException {
+        MatcherSnapshot snapshot = subImageCharMatcher.getSnapshot();
+        try (BandBrightnessReader reader = new BandBrightnessReader(imagePath, bandPixels)) {
+            reader.readRows(resolution, (row, brightness) -> {
+                char[] line = new char[brightness.getCols()];
+                for (int col = 0; col < line.length; col++) {
+                    line[col] = snapshot.getCharByFixedBrightness(brightness.getFixed(0, col));
+                }
+                rowSink.accept(line);
+            });
+        }
+    }
+
+    /**
+     * converts an image file.
+     * only the ascii art is kept whole in memory, the image is decoded band by band.
+     * @param imagePath  the path of the image
+     * @param resolution the resolution of the ascii art
+     * @return the ascii art
+     * @throws IOException if the image cannot be read
+     * */
+    public char[][] convert(String imagePath, int resolution) throws IOException {
+        char[][] asciiArt = new char[resolution][];
+        int[] next = {0};
+        convert(imagePath, resolution, line -> asciiArt[next[0]++] = line);
+        return asciiArt;
+    }
+}
@@ -0,0 +1,114 @@
+package ascii_output;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.logging.Logger;
+
+/**
+ * Output a sequence of 2D arrays of chars as the frames of one animated HTML file.
+ * Every call to out appends a frame, close finishes the file with the script that
+ * plays the frames in a loop.
+ */
+public class AnimatedHtmlAsciiOutput implements AsciiOutput, Closeable {
+    private static final double BASE_LINE_SPACING = 0.8;
+    private static final double BASE_FONT_SIZE = 150.0;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    private final String fontName;
+    private final String filename;
+    private final int frameDelayMs;
+    private OutputStream writer = null;
+    private final byte[] charBytes = new byte[Utf8.MAX_BYTES_PER_CHAR];
+    private int frames = 0;
+
+    /**
+     * @param filename     the file to write
+     * @param fontName     the font of the frames
+     * @param frameDelayMs the time each frame is shown, in milliseconds
+     */
+    public AnimatedHtmlAsciiOutput(String filename, String fontName, int frameDelayMs) {
+        this.fontName = fontName;
+        this.filename = filename;
+        this.frameDelayMs = frameDelayMs;
+    }
+
+    @Override
+    public synchronized void out(char[][] chars) {
+        try {
+            if (writer == null) {
+                writer = new BufferedOutputStream(Files.newOutputStream(Path.of(filename)));
+                write(String.format(Locale.ROOT,
+                    "<!DOCTYPE html>\n"+
+                    "<html>\n"+
+                    "<body style=\""+
+                        "\tCOLOR:#000000;"+
+                        "\tTEXT-ALIGN:center;"+
+                        "\tFONT-SIZE:1px;\">\n"+
+                    "<style>p.frame{"+
+                        "white-space:pre;"+
+                        "FONT-FAMILY:%s;"+
+                        "FONT-SIZE:%frem;"+
+                        "LETTER-SPACING:0.15em;"+
+                        "LINE-HEIGHT:%fem;"+
+                        "display:none;}</style>\n",
+                        fontName, BASE_FONT_SIZE/chars[0].length, BASE_LINE_SPACING));
+            }
+            write(frames == 0 ? "<p class=\"frame\" style=\"display:block\">\n" : "<p class=\"frame\">\n");
+            for (char[] row : chars) {
+                for (char c : row) {
+                    if (c < Utf8.ASCII_LIMIT) {
+                        writer.write(HtmlAsciiOutput.ESCAPES[c]);
+                    } else {
+                        writer.write(charBytes, 0, Utf8.encode(c, charBytes, 0));
+                    }
+                }
+                writer.write(LINE_SEPARATOR);
+            }
+            write("</p>\n");
+            frames++;
+        } catch (IOException e) {
+            Logger.getGlobal().severe(String.format("Failed to write to \"%s\"", filename));
+        }
+    }
+
+    /**
+     * writes the player script and closes the file.
+     */
+    @Override
+    public synchronized void close() {
+        if (writer == null) {
+            return;
+        }
+        try (OutputStream finished = writer) {
+            finished.write((
+                "<script>\n"+
+                "var frames = document.getElementsByClassName('frame'), current = 0;\n"+
+                "setInterval(function() {\n"+
+                "  frames[current].style.display = 'none';\n"+
+                "  current = (current + 1) % frames.length;\n"+
+                "  frames[current].style.display = 'block';\n"+
+                "}, " + frameDelayMs + ");\n"+
+                "</script>\n"+
+                "</body>\n"+
+                "</html>\n").getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            Logger.getGlobal().severe(String.format("Failed to write to \"%s\"", filename));
+        }
+        writer = null;
+    }
+
+    /**
+     * writes a string as UTF-8.
+     * @param text the string
+     * @throws IOException if the file cannot be written
+     */
+    private void write(String text) throws IOException {
+        writer.write(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,241 @@
+package ascii_output;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Output a 2D array of chars to an ANSI terminal, each char in the 24-bit color of its tile.
+ * The last frame is kept, and a new frame of the same size only rewrites the cells that changed:
+ * the cursor is moved to the first cell of every run of changes, and runs separated by a gap
+ * shorter than a cursor move are written as one run. A color escape is only written when the
+ * color differs from the one of the previous char written, so the bytes of a frame grow with
+ * what changed rather than with the size of the grid.
+ * Every char is followed by a space, like ConsoleAsciiOutput.
+ */
+public class AnsiAsciiOutput implements AsciiOutput {
+    private static final byte ESCAPE = 0x1B;
+    private static final byte[] CLEAR = "\u001B[0m\u001B[2J".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] RESET = "\u001B[0m".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FOREGROUND = "\u001B[38;2;".getBytes(StandardCharsets.US_ASCII);
+    private static final byte SPACE = ' ';
+    private static final int CELL_WIDTH = 2;         // the char and its space
+    private static final int MAX_COLOR_BYTES = 19;   // ESC[38;2;255;255;255m
+    private static final int MAX_MOVE_BYTES = 24;    // ESC[row;colH
+    private static final int GAP_BRIDGE = 3;         // unchanged cells cheaper to rewrite than to skip
+    private static final int NO_COLOR = -1;
+    private static final int RED_SHIFT = 16;
+    private static final int GREEN_SHIFT = 8;
+    private static final int BYTE_MASK = 0xFF;
+
+    private final OutputStream stream;
+    private char[][] previousChars = null;
+    private int[][] previousColors = null;
+    private byte[] buffer = new byte[0];
+    private int position = 0;
+    private int currentColor = NO_COLOR;
+
+    /**
+     * Output to System.out, as it is when out is called.
+     */
+    public AnsiAsciiOutput() {
+        this.stream = null;
+    }
+
+    /**
+     * Output to the given stream, the stream is flushed after every frame.
+     * @param stream the stream to write to
+     */
+    public AnsiAsciiOutput(OutputStream stream) {
+        this.stream = stream;
+    }
+
+    @Override
+    public void out(char[][] chars) {
+        out(chars, null);
+    }
+
+    /**
+     * Output a frame, only the cells that changed since the last frame are written.
+     * A frame of another size, or switching between colored and plain frames,
+     * clears the screen and writes the whole frame.
+     * @param chars  the chars
+     * @param colors the packed RGB color of every char, or null for the default color
+     */
+    @Override
+    public synchronized void out(char[][] chars, int[][] colors) {
+        boolean redraw = previousChars == null || (previousColors == null) != (colors == null)
+                || !sameSize(chars, previousChars);
+        position = 0;
+        currentColor = NO_COLOR;
+        if (redraw) {
+            ensureCapacity(CLEAR.length);
+            append(CLEAR);
+        }
+        for (int y = 0; y < chars.length; y++) {
+            writeRow(y, chars[y], colors == null ? null : colors[y], redraw);
+        }
+        ensureCapacity(RESET.length + MAX_MOVE_BYTES);
+        append(RESET);
+        moveTo(chars.length, 0); // leave the cursor below the frame
+        try {
+            OutputStream target = stream != null ? stream : System.out;
+            target.write(buffer, 0, position);
+            target.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (redraw) {
+            previousChars = copy(chars);
+            previousColors = colors == null ? null : copy(colors);
+            return;
+        }
+        for (int y = 0; y < chars.length; y++) {
+            System.arraycopy(chars[y], 0, previousChars[y], 0, chars[y].length);
+            if (colors != null) {
+                System.arraycopy(colors[y], 0, previousColors[y], 0, colors[y].length);
+            }
+        }
+    }
+
+    /**
+     * writes the changed runs of a row.
+     * @param y         the row
+     * @param row       the chars of the row
+     * @param rowColors the colors of the row, or null
+     * @param redraw    true to write the whole row
+     */
+    private void writeRow(int y, char[] row, int[] rowColors, boolean redraw) {
+        int x = 0;
+        while (x < row.length) {
+            if (!redraw && !changed(y, x, row, rowColors)) {
+                x++;
+                continue;
+            }
+            int end = x + 1;
+            int gap = 0;
+            for (int next = end; next < row.length && gap <= GAP_BRIDGE; next++) {
+                if (redraw || changed(y, next, row, rowColors)) {
+                    end = next + 1;
+                    gap = 0;
+                } else {
+                    gap++;
+                }
+            }
+            ensureCapacity(MAX_MOVE_BYTES + (end - x) * (MAX_COLOR_BYTES + Utf8.MAX_BYTES_PER_CHAR + 1));
+            moveTo(y, x);
+            for (int i = x; i < end; i++) {
+                if (rowColors != null && rowColors[i] != currentColor) {
+                    appendColor(rowColors[i]);
+                }
+                position = Utf8.encode(row[i], buffer, position);
+                buffer[position++] = SPACE;
+            }
+            x = end;
+        }
+    }
+
+    /**
+     * checks whether a cell differs from the last frame.
+     * @param y         the row of the cell
+     * @param x         the column of the cell
+     * @param row       the chars of the row
+     * @param rowColors the colors of the row, or null
+     * @return true if the char or its color changed
+     */
+    private boolean changed(int y, int x, char[] row, int[] rowColors) {
+        return row[x] != previousChars[y][x] || (rowColors != null && rowColors[x] != previousColors[y][x]);
+    }
+
+    /**
+     * appends a cursor move to a cell, rows and columns of the terminal count from 1.
+     * @param y the row of the cell
+     * @param x the column of the cell
+     */
+    private void moveTo(int y, int x) {
+        buffer[position++] = ESCAPE;
+        buffer[position++] = '[';
+        appendNumber(y + 1);
+        buffer[position++] = ';';
+        appendNumber(x * CELL_WIDTH + 1);
+        buffer[position++] = 'H';
+    }
+
+    /**
+     * appends the escape of a 24-bit foreground color.
+     * @param color the packed RGB color
+     */
+    private void appendColor(int color) {
+        append(FOREGROUND);
+        appendNumber((color >> RED_SHIFT) & BYTE_MASK);
+        buffer[position++] = ';';
+        appendNumber((color >> GREEN_SHIFT) & BYTE_MASK);
+        buffer[position++] = ';';
+        appendNumber(color & BYTE_MASK);
+        buffer[position++] = 'm';
+        currentColor = color;
+    }
+
+    /**
+     * appends a non negative number in decimal.
+     * @param value the number
+     */
+    private void appendNumber(int value) {
+        int start = position;
+        do {
+            buffer[position++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        for (int i = start, j = position - 1; i < j; i++, j--) {
+            byte digit = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = digit;
+        }
+    }
+
+    private void append(byte[] bytes) {
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    /**
+     * grows the buffer, keeping what was written, so that the given number of bytes fits.
+     * @param bytes the number of bytes about to be appended
+     */
+    private void ensureCapacity(int bytes) {
+        if (position + bytes > buffer.length) {
+            byte[] grown = new byte[Math.max(position + bytes, buffer.length * 2)];
+            System.arraycopy(buffer, 0, grown, 0, position);
+            buffer = grown;
+        }
+    }
+
+    private static boolean sameSize(char[][] chars, char[][] other) {
+        if (chars.length != other.length) {
+            return false;
+        }
+        for (int y = 0; y < chars.length; y++) {
+            if (chars[y].length != other[y].length) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static char[][] copy(char[][] chars) {
+        char[][] copy = new char[chars.length][];
+        for (int y = 0; y < chars.length; y++) {
+            copy[y] = chars[y].clone();
+        }
+        return copy;
+    }
+
+    private static int[][] copy(int[][] colors) {
+        int[][] copy = new int[colors.length][];
+        for (int y = 0; y < colors.length; y++) {
+            copy[y] = colors[y].clone();
+        }
+        return copy;
+    }
+}
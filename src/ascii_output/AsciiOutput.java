@@ -10,4 +10,14 @@ public interface AsciiOutput {
      * Output the specified 2D array of chars
      */
     void out(char[][] chars);
+
+    /**
+     * Output the specified 2D array of chars, each in the color of its tile.
+     * Outputs without colors ignore them.
+     * @param chars  the chars
+     * @param colors the packed RGB color of every char
+     */
+    default void out(char[][] chars, int[][] colors) {
+        out(chars);
+    }
 }
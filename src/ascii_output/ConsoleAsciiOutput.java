@@ -1,16 +1,94 @@
 package ascii_output;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
 /**
  * Output a 2D array of chars to the console.
+ * The whole frame, spacing included, is encoded into one reusable buffer
+ * and written with a single write, to the console or to any stream or channel.
  * @author Dan Nirel
  */public class ConsoleAsciiOutput implements AsciiOutput{
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+    private static final byte SPACE = ' ';
+
+    private final OutputStream stream;
+    private final WritableByteChannel channel;
+    private byte[] buffer = new byte[0];
+
+    /**
+     * Output to System.out, as it is when out is called.
+     */
+    public ConsoleAsciiOutput() {
+        this.stream = null;
+        this.channel = null;
+    }
+
+    /**
+     * Output to the given stream, the stream is flushed after every frame.
+     * @param stream the stream to write to
+     */
+    public ConsoleAsciiOutput(OutputStream stream) {
+        this.stream = stream;
+        this.channel = null;
+    }
+
+    /**
+     * Output to the given channel.
+     * @param channel the channel to write to
+     */
+    public ConsoleAsciiOutput(WritableByteChannel channel) {
+        this.stream = null;
+        this.channel = channel;
+    }
+
     @Override
-    public void out(char[][] chars) {
-        for (int y = 0; y < chars.length ; y++) {
-            for (int x = 0; x < chars[y].length; x++) {
-                System.out.print(chars[y][x] + " ");
+    public synchronized void out(char[][] chars) {
+        int length = encode(chars);
+        try {
+            if (channel != null) {
+                ByteBuffer frame = ByteBuffer.wrap(buffer, 0, length);
+                while (frame.hasRemaining()) {
+                    channel.write(frame);
+                }
+            } else {
+                OutputStream target = stream != null ? stream : System.out;
+                target.write(buffer, 0, length);
+                target.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * encodes the frame into the buffer as UTF-8, every char followed by a space
+     * and every row by a line separator, growing the buffer if needed.
+     * @param chars the frame
+     * @return the number of bytes of the frame
+     */
+    private int encode(char[][] chars) {
+        int capacity = 0;
+        for (char[] row : chars) {
+            capacity += row.length * (Utf8.MAX_BYTES_PER_CHAR + 1) + LINE_SEPARATOR.length;
+        }
+        if (buffer.length < capacity) {
+            buffer = new byte[capacity];
+        }
+        byte[] bytes = buffer;
+        int position = 0;
+        for (char[] row : chars) {
+            for (char c : row) {
+                position = Utf8.encode(c, bytes, position);
+                bytes[position++] = SPACE;
             }
-            System.out.println();
+            System.arraycopy(LINE_SEPARATOR, 0, bytes, position, LINE_SEPARATOR.length);
+            position += LINE_SEPARATOR.length;
         }
+        return position;
     }
 }
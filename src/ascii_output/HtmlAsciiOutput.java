@@ -1,30 +1,242 @@
 package ascii_output;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Output a 2D array of chars to an HTML file viewable in a web browser.
+ * Every char is escaped through a precomputed table straight into one reusable byte buffer,
+ * which is written to the file through a FileChannel whenever it fills up.
+ * A file name ending with .gz is written gzip compressed, as the page is produced.
+ * Colored chars are wrapped in spans, one span for every run of similarly colored chars of a row,
+ * which keeps the page small at high resolutions.
  * @author Dan Nirel
  */
 public class HtmlAsciiOutput implements AsciiOutput {
     private static final double BASE_LINE_SPACING = 0.8;
     private static final double BASE_FONT_SIZE = 150.0;
+    private static final String GZIP_SUFFIX = ".gz";
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int GZIP_BUFFER_SIZE = 1 << 16;
+    private static final int MAX_BYTES_PER_CHAR = 5; // "&amp;"
+    private static final int COLOR_TOLERANCE = 24;  // channel difference still merged into a run
+    private static final int NO_COLOR = -1;
+    private static final int RED_SHIFT = 16;
+    private static final int GREEN_SHIFT = 8;
+    private static final int BYTE_MASK = 0xFF;
+    private static final int HEX_DIGITS = 6;
+    private static final int NIBBLE_BITS = 4;
+    private static final int NIBBLE_MASK = 0xF;
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SPAN_START = "<span style=\"color:#".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SPAN_START_END = "\">".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SPAN_END = "</span>".getBytes(StandardCharsets.UTF_8);
+    private static final int SPAN_BYTES = SPAN_START.length + HEX_DIGITS + SPAN_START_END.length + SPAN_END.length;
+    static final byte[][] ESCAPES = createEscapes(); // the page bytes of every ASCII char
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+    private static final byte[] FOOTER = (
+            "</p>\n"+
+            "</body>\n"+
+            "</html>\n").getBytes(StandardCharsets.UTF_8);
 
     private final String fontName;
     private final String filename;
+    private final OutputStream target;
+    private byte[] buffer = new byte[0];
+    private byte[] header = null;
+    private int headerColumns = -1;
+
+    /**
+     * A sink of encoded bytes.
+     */
+    private interface ByteSink {
+        void write(byte[] bytes, int length) throws IOException;
+    }
 
     public HtmlAsciiOutput(String filename, String fontName) {
         this.fontName = fontName;
         this.filename = filename;
+        this.target = null;
+    }
+
+    /**
+     * Output to the given stream, which is flushed but not closed after every page.
+     * @param target   the stream to write the UTF-8 page to
+     * @param fontName the font of the page
+     */
+    public HtmlAsciiOutput(OutputStream target, String fontName) {
+        this.fontName = fontName;
+        this.filename = null;
+        this.target = target;
     }
 
     @Override
     public void out(char[][] chars) {
-        try(BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
-            writer.write(String.format(
+        out(chars, null);
+    }
+
+    /**
+     * Output the chars, each in the color of its tile,
+     * runs of a row whose channels all differ from the first color of the run
+     * by at most COLOR_TOLERANCE share its span.
+     * @param chars  the chars
+     * @param colors the packed RGB color of every char, or null for black chars
+     */
+    @Override
+    public synchronized void out(char[][] chars, int[][] colors) {
+        if (target != null) {
+            try {
+                write((bytes, length) -> target.write(bytes, 0, length), chars, colors);
+                target.flush();
+            } catch(IOException e) {
+                Logger.getGlobal().severe("Failed to write the html output");
+            }
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (filename.endsWith(GZIP_SUFFIX)) {
+                try (GZIPOutputStream gzip = new GZIPOutputStream(Channels.newOutputStream(channel), GZIP_BUFFER_SIZE)) {
+                    write((bytes, length) -> gzip.write(bytes, 0, length), chars, colors);
+                }
+            } else {
+                write((bytes, length) -> {
+                    ByteBuffer page = ByteBuffer.wrap(bytes, 0, length);
+                    while (page.hasRemaining()) {
+                        channel.write(page);
+                    }
+                }, chars, colors);
+            }
+        } catch(IOException e) {
+            Logger.getGlobal().severe(String.format("Failed to write to \"%s\"", filename));
+        }
+    }
+
+    /**
+     * writes the page, encoding it into the buffer and handing the buffer to the sink
+     * whenever it fills up.
+     * @param sink   the sink of the page
+     * @param chars  the ascii art
+     * @param colors the colors of the chars, or null
+     * @throws IOException if the sink fails
+     */
+    private void write(ByteSink sink, char[][] chars, int[][] colors) throws IOException {
+        byte[] pageHeader = headerOf(chars[0].length);
+        sink.write(pageHeader, pageHeader.length);
+        int maxBytesPerChar = colors == null ? MAX_BYTES_PER_CHAR : MAX_BYTES_PER_CHAR + SPAN_BYTES;
+        int pageSize = 0;
+        for (char[] row : chars) {
+            pageSize += row.length * maxBytesPerChar + LINE_SEPARATOR.length;
+        }
+        int reserve = maxBytesPerChar + LINE_SEPARATOR.length;
+        int size = Math.max(Math.min(pageSize, BUFFER_SIZE), reserve);
+        if (buffer.length < size) {
+            buffer = new byte[size];
+        }
+        byte[] bytes = buffer;
+        int limit = bytes.length - reserve;
+        int position = 0;
+        for (int y = 0; y < chars.length; y++) {
+            char[] row = chars[y];
+            int[] rowColors = colors == null ? null : colors[y];
+            int runColor = NO_COLOR;
+            for (int x = 0; x < row.length; x++) {
+                if (position > limit) {
+                    sink.write(bytes, position);
+                    position = 0;
+                }
+                if (rowColors != null && (runColor == NO_COLOR || !isSimilar(rowColors[x], runColor))) {
+                    if (runColor != NO_COLOR) {
+                        position = append(SPAN_END, bytes, position);
+                    }
+                    runColor = rowColors[x];
+                    position = appendSpanStart(runColor, bytes, position);
+                }
+                char c = row[x];
+                if (c < Utf8.ASCII_LIMIT) {
+                    byte[] escaped = ESCAPES[c];
+                    if (escaped.length == 1) {
+                        bytes[position++] = escaped[0];
+                    } else {
+                        System.arraycopy(escaped, 0, bytes, position, escaped.length);
+                        position += escaped.length;
+                    }
+                } else {
+                    position = Utf8.encode(c, bytes, position);
+                }
+            }
+            if (position > limit) {
+                sink.write(bytes, position);
+                position = 0;
+            }
+            if (runColor != NO_COLOR) {
+                position = append(SPAN_END, bytes, position);
+            }
+            position = append(LINE_SEPARATOR, bytes, position);
+        }
+        sink.write(bytes, position);
+        sink.write(FOOTER, FOOTER.length);
+    }
+
+    /**
+     * checks whether a color may join the run of another color.
+     * @param color    the packed RGB color
+     * @param runColor the packed RGB color of the run
+     * @return true if every channel differs by at most COLOR_TOLERANCE
+     */
+    private static boolean isSimilar(int color, int runColor) {
+        return channelDifference(color, runColor, RED_SHIFT) <= COLOR_TOLERANCE
+                && channelDifference(color, runColor, GREEN_SHIFT) <= COLOR_TOLERANCE
+                && channelDifference(color, runColor, 0) <= COLOR_TOLERANCE;
+    }
+
+    private static int channelDifference(int color, int other, int shift) {
+        return Math.abs(((color >> shift) & BYTE_MASK) - ((other >> shift) & BYTE_MASK));
+    }
+
+    /**
+     * appends the opening tag of the span of a color.
+     * @param color    the packed RGB color
+     * @param bytes    the buffer
+     * @param position the position to append at
+     * @return the position after the tag
+     */
+    private static int appendSpanStart(int color, byte[] bytes, int position) {
+        position = append(SPAN_START, bytes, position);
+        for (int shift = (HEX_DIGITS - 1) * NIBBLE_BITS; shift >= 0; shift -= NIBBLE_BITS) {
+            bytes[position++] = HEX[(color >> shift) & NIBBLE_MASK];
+        }
+        return append(SPAN_START_END, bytes, position);
+    }
+
+    /**
+     * appends bytes to the buffer.
+     * @param source   the bytes to append
+     * @param bytes    the buffer
+     * @param position the position to append at
+     * @return the position after the bytes
+     */
+    private static int append(byte[] source, byte[] bytes, int position) {
+        System.arraycopy(source, 0, bytes, position, source.length);
+        return position + source.length;
+    }
+
+    /**
+     * returns the header of a page, formatted once per width.
+     * @param columns the number of columns of the page
+     * @return the header bytes
+     */
+    private byte[] headerOf(int columns) {
+        if (columns != headerColumns) {
+            header = String.format(
                 "<!DOCTYPE html>\n"+
                 "<html>\n"+
                 "<body style=\""+
@@ -37,27 +249,27 @@ public class HtmlAsciiOutput implements AsciiOutput {
                     "\tFONT-SIZE:%frem;"+
                     "\tLETTER-SPACING:0.15em;"+
                     "\tLINE-HEIGHT:%fem;\">\n",
-                    fontName, BASE_FONT_SIZE/chars[0].length, BASE_LINE_SPACING));
-
-            for(int y = 0 ; y < chars.length ; y++) {
-                for (int x = 0; x < chars[y].length ; x++) {
-                    String htmlRep;
-                    switch(chars[y][x]) {
-                        case '<': htmlRep = "&lt;";  break;
-                        case '>': htmlRep = "&gt;";  break;
-                        case '&': htmlRep = "&amp;"; break;
-                        default:  htmlRep = String.valueOf(chars[y][x]);
-                    }
-                    writer.write(htmlRep);
-                }
-                writer.newLine();
-            }
-            writer.write(
-                "</p>\n"+
-                "</body>\n"+
-                "</html>\n");
-        } catch(IOException e) {
-            Logger.getGlobal().severe(String.format("Failed to write to \"%s\"", filename));
+                    fontName, BASE_FONT_SIZE/columns, BASE_LINE_SPACING).getBytes(StandardCharsets.UTF_8);
+            headerColumns = columns;
+        }
+        return header;
+    }
+
+    /**
+     * creates the escaped bytes of every ASCII char.
+     * @return the table, indexed by char
+     */
+    private static byte[][] createEscapes() {
+        byte[][] escapes = new byte[Utf8.ASCII_LIMIT][];
+        for (char c = 0; c < Utf8.ASCII_LIMIT; c++) {
+            String escaped = switch (c) {
+                case '<' -> "&lt;";
+                case '>' -> "&gt;";
+                case '&' -> "&amp;";
+                default -> String.valueOf(c);
+            };
+            escapes[c] = escaped.getBytes(StandardCharsets.UTF_8);
         }
+        return escapes;
     }
 }
@@ -0,0 +1,42 @@
+package ascii_output;
+
+/**
+ * Encodes chars as UTF-8 straight into the byte buffers of the outputs,
+ * without the intermediate strings and arrays of String.getBytes.
+ */
+final class Utf8 {
+    /** chars below it are one byte, the ASCII char itself */
+    static final int ASCII_LIMIT = 0x80;
+    /** the most bytes a char is encoded to */
+    static final int MAX_BYTES_PER_CHAR = 3;
+    private static final int TWO_BYTES_LIMIT = 0x800;
+    private static final int TWO_BYTES_LEAD = 0xC0;
+    private static final int THREE_BYTES_LEAD = 0xE0;
+    private static final int CONTINUATION = 0x80;
+    private static final int CONTINUATION_MASK = 0x3F;
+    private static final int CONTINUATION_BITS = 6;
+
+    private Utf8() {
+    }
+
+    /**
+     * encodes a char into a buffer.
+     * @param c        the char
+     * @param bytes    the buffer, with room for MAX_BYTES_PER_CHAR bytes at the position
+     * @param position the position of the first byte of the char
+     * @return the position after the last byte of the char
+     */
+    static int encode(char c, byte[] bytes, int position) {
+        if (c < ASCII_LIMIT) {
+            bytes[position++] = (byte) c;
+        } else if (c < TWO_BYTES_LIMIT) {
+            bytes[position++] = (byte) (TWO_BYTES_LEAD | (c >> CONTINUATION_BITS));
+            bytes[position++] = (byte) (CONTINUATION | (c & CONTINUATION_MASK));
+        } else {
+            bytes[position++] = (byte) (THREE_BYTES_LEAD | (c >> (2 * CONTINUATION_BITS)));
+            bytes[position++] = (byte) (CONTINUATION | ((c >> CONTINUATION_BITS) & CONTINUATION_MASK));
+            bytes[position++] = (byte) (CONTINUATION | (c & CONTINUATION_MASK));
+        }
+        return position;
+    }
+}
@@ -0,0 +1,358 @@
+package benchmark;
+
+import ascii_art.StreamingAsciiArt;
+import ascii_output.AsciiOutput;
+import ascii_output.ConsoleAsciiOutput;
+import ascii_output.HtmlAsciiOutput;
+import image.BrightnessGrid;
+import image.Image;
+import image.ImageProcessor;
+import image.LuminanceTable;
+import image.ShapeGrid;
+import image_char_matching.SubImgCharMatcher;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Benchmarks every stage of the conversion pipeline, reporting ops/s and bytes allocated per op.
+ * usage: java benchmark.PipelineBenchmark [--sizes 1,4,16] [--res 32,128] [--time ms] [image files...]
+ * sizes are of synthetic images in megapixels, image files are benchmarked as given.
+ * The allocation rate comes from the per-thread allocation counter of the HotSpot ThreadMXBean,
+ * like the gc profiler of JMH.
+ * The square tiles over the padded image are also compared with the area-weighted tiles over the
+ * original pixels for quality: the share of cells covering mostly padding, the share of pixels
+ * no tile covers, and how far the aspect of the ascii art is from the aspect of the image.
+ * This is a harness, not JMH, and its numbers only compare stages of one run:
+ * every benchmark runs in this one JVM with no forks, so earlier benchmarks shape the profile
+ * and inlining of later ones; the warm-up is a single period as long as the measurement,
+ * with no separate iterations and no error bounds; and results only go to a volatile sink,
+ * with no Blackhole, so work whose result is folded before the sink may still be eliminated.
+ */
+public class PipelineBenchmark {
+    private static final int MEGAPIXEL = 1_000_000;
+    private static final int DEFAULT_TIME_MS = 1000;
+    private static final int MIN_OPS = 3;
+    private static final long NANOS_PER_MS = 1_000_000L;
+    private static final double NANOS_PER_SECOND = 1e9;
+    private static final char[] CHARSET = "0123456789".toCharArray();
+    private static final String[] ROUNDERS = {"abs", "upper", "lower"};
+    private static final char FIRST_CHAR = 32;
+    private static final char LAST_CHAR = 126;
+    private static final int LOOKUPS = 100_000;
+    private static final double PERCENT = 100.0;
+    private static final int HALF = 2;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final List<String> REPORT = new ArrayList<>();
+    private static final List<String> QUALITY = new ArrayList<>();
+    private static volatile Object sink;
+
+    private static int timeMs = DEFAULT_TIME_MS;
+
+    /**
+     * runs the benchmarks.
+     * @param args see the class comment
+     * @throws IOException if an image cannot be read or written
+     * */
+    public static void main(String[] args) throws IOException {
+        int[] sizes = {1, 4, 16};
+        int[] resolutions = {32, 128, 512};
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--sizes" -> sizes = parseList(args[++i]);
+                case "--res" -> resolutions = parseList(args[++i]);
+                case "--time" -> timeMs = Integer.parseInt(args[++i]);
+                default -> files.add(args[i]);
+            }
+        }
+        benchmarkMatcher();
+        for (int size : sizes) {
+            File file = writeSyntheticImage(size);
+            benchmarkImage(file.getPath(), size + "MP", resolutions);
+            file.delete();
+        }
+        for (String file : files) {
+            benchmarkImage(file, new File(file).getName(), resolutions);
+        }
+        System.out.printf("%-60s %14s %16s%n", "benchmark", "ops/s", "bytes/op");
+        REPORT.forEach(System.out::println);
+        System.out.println();
+        System.out.printf("%-60s %10s %10s %10s %10s%n", "tiling", "cells", "padding %", "dropped %", "aspect %");
+        QUALITY.forEach(System.out::println);
+    }
+
+    /**
+     * benchmarks the charset edits and the char lookup of every rounding strategy.
+     * */
+    private static void benchmarkMatcher() {
+        SubImgCharMatcher matcher = new SubImgCharMatcher(CHARSET);
+        measure("matcher addChar+removeChar (all printable)", () -> {
+            for (char c = FIRST_CHAR; c <= LAST_CHAR; c++) {
+                matcher.addChar(c);
+            }
+            for (char c = FIRST_CHAR; c <= LAST_CHAR; c++) {
+                matcher.removeChar(c);
+            }
+            return matcher;
+        });
+        for (char c = FIRST_CHAR; c <= LAST_CHAR; c++) {
+            matcher.addChar(c);
+        }
+        double[] brightness = new Random(1).doubles(LOOKUPS).toArray();
+        int[] fixedBrightness = new Random(1).ints(LOOKUPS, 0, BrightnessGrid.FIXED_ONE + 1).toArray();
+        for (String rounder : ROUNDERS) {
+            matcher.setRounder(rounder);
+            measure("getCharByImageBrightness x" + LOOKUPS + " [" + rounder + "]", () -> {
+                char result = 0;
+                for (double value : brightness) {
+                    result ^= matcher.getCharByImageBrightness(value);
+                }
+                return result;
+            });
+            measure("getCharByFixedBrightness x" + LOOKUPS + " [" + rounder + "]", () -> {
+                char result = 0;
+                for (int value : fixedBrightness) {
+                    result ^= matcher.getCharByFixedBrightness(value);
+                }
+                return result;
+            });
+        }
+    }
+
+    /**
+     * benchmarks every stage of the pipeline on one image.
+     * @param file        the image file
+     * @param label       the name of the image in the report
+     * @param resolutions the resolutions to benchmark
+     * @throws IOException if the image cannot be read
+     * */
+    private static void benchmarkImage(String file, String label, int[] resolutions) throws IOException {
+        measure(label + " load", () -> {
+            try {
+                return new Image(file);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Image image = new Image(file);
+        measure(label + " padImageWithWhite", () -> ImageProcessor.padImageWithWhite(image));
+        Image padded = ImageProcessor.padImageWithWhite(image);
+        measure(label + " buildLuminanceTable", () -> ImageProcessor.buildLuminanceTable(padded));
+        LuminanceTable table = ImageProcessor.buildLuminanceTable(padded);
+        SubImgCharMatcher matcher = new SubImgCharMatcher(CHARSET);
+        for (char c = FIRST_CHAR; c <= LAST_CHAR; c++) {
+            matcher.addChar(c);
+        }
+        for (int resolution : resolutions) {
+            if (resolution > padded.getHeight()) {
+                continue;
+            }
+            String prefix = label + " res " + resolution + " ";
+            measure(prefix + "getSubImages", () -> ImageProcessor.getSubImages(padded, resolution));
+            List<Image> subImages = ImageProcessor.getSubImages(padded, resolution);
+            measure(prefix + "calculateBrightness (all tiles)", () -> {
+                double sum = 0;
+                for (Image subImage : subImages) {
+                    sum += ImageProcessor.calculateBrightness(subImage);
+                }
+                return sum;
+            });
+            measure(prefix + "calculateBrightnessGrid", () ->
+                    ImageProcessor.calculateBrightnessGrid(table, resolution));
+            int areaRows = Math.min(resolution, image.getHeight());
+            int areaCols = (int) Math.max(1, Math.min(image.getWidth(),
+                    Math.round((double) areaRows * image.getWidth() / image.getHeight())));
+            measure(prefix + "calculateAreaBrightnessGrid " + areaCols + "x" + areaRows, () ->
+                    ImageProcessor.calculateAreaBrightnessGrid(table, areaRows, areaCols));
+            reportTilingQuality(prefix, table, resolution, areaRows, areaCols);
+            BrightnessGrid grid = ImageProcessor.calculateBrightnessGrid(table, resolution);
+            char[][] chars = new char[grid.getRows()][grid.getCols()];
+            measure(prefix + "match brightness (all tiles)", () -> {
+                for (int row = 0; row < grid.getRows(); row++) {
+                    for (int col = 0; col < grid.getCols(); col++) {
+                        chars[row][col] = matcher.getCharByFixedBrightness(grid.getFixed(row, col));
+                    }
+                }
+                return chars;
+            });
+            StreamingAsciiArt streaming = new StreamingAsciiArt(matcher);
+            measure(prefix + "StreamingAsciiArt.convert (file to chars)", () -> {
+                try {
+                    return streaming.convert(file, resolution);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            int cells = matcher.getShapeCells();
+            measure(prefix + "calculateShapeGrid", () ->
+                    ImageProcessor.calculateShapeGrid(table, resolution, cells));
+            ShapeGrid shapes = ImageProcessor.calculateShapeGrid(table, resolution, cells);
+            char[][] shapeChars = new char[shapes.getRows()][shapes.getCols()];
+            measure(prefix + "match shape (all tiles)", () -> {
+                for (int row = 0; row < shapes.getRows(); row++) {
+                    for (int col = 0; col < shapes.getCols(); col++) {
+                        shapeChars[row][col] = matcher.getCharByShape(shapes.getBits(), shapes.offsetOf(row, col));
+                    }
+                }
+                return shapeChars;
+            });
+            int words = ShapeGrid.wordsPerTile(cells);
+            measure(prefix + "match shape (equal neighbours reused)", () -> {
+                long[] bits = shapes.getBits();
+                for (int row = 0; row < shapes.getRows(); row++) {
+                    char[] line = shapeChars[row];
+                    for (int col = 0; col < shapes.getCols(); col++) {
+                        int offset = shapes.offsetOf(row, col);
+                        line[col] = col > 0 && Arrays.equals(bits, offset - words, offset, bits, offset, offset + words)
+                                ? line[col - 1]
+                                : matcher.getCharByShape(bits, offset);
+                    }
+                }
+                return shapeChars;
+            });
+            PrintStream console = System.out;
+            AsciiOutput consoleOutput = new ConsoleAsciiOutput();
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            try {
+                measure(prefix + "ConsoleAsciiOutput.out", () -> {
+                    consoleOutput.out(chars);
+                    return chars;
+                });
+            } finally {
+                System.setOut(console);
+            }
+            File html = File.createTempFile("benchmark", ".html");
+            AsciiOutput htmlOutput = new HtmlAsciiOutput(html.getPath(), "Courier New");
+            measure(prefix + "HtmlAsciiOutput.out", () -> {
+                htmlOutput.out(chars);
+                return chars;
+            });
+            html.delete();
+        }
+    }
+
+    /**
+     * compares the square tiles of a resolution over the padded image with the area-weighted
+     * tiles over the original pixels.
+     * @param prefix     the name of the image and resolution in the report
+     * @param table      the luminance table of the padded image
+     * @param resolution the resolution of the square tiles
+     * @param areaRows   the rows of the area-weighted tiles
+     * @param areaCols   the columns of the area-weighted tiles
+     * */
+    private static void reportTilingQuality(String prefix, LuminanceTable table, int resolution,
+                                            int areaRows, int areaCols) {
+        int height = table.getOriginalHeight();
+        int width = table.getOriginalWidth();
+        int top = (table.getHeight() - height) / HALF;
+        int left = (table.getWidth() - width) / HALF;
+        int side = table.getHeight() / resolution;
+        int cols = ImageProcessor.countTileColumns(table, resolution);
+        long paddingCells = 0;
+        for (int row = 0; row < resolution; row++) {
+            for (int col = 0; col < cols; col++) {
+                long covered = overlap(row * side, side, top, height) * overlap(col * side, side, left, width);
+                if (covered * HALF < (long) side * side) {
+                    paddingCells++;
+                }
+            }
+        }
+        long coveredPixels = overlap(0, resolution * side, top, height) * overlap(0, cols * side, left, width);
+        double aspect = (double) width / height;
+        QUALITY.add(String.format("%-60s %10s %10.2f %10.2f %10.2f", prefix + "padded square tiles",
+                cols + "x" + resolution, paddingCells * PERCENT / ((long) resolution * cols),
+                ((long) width * height - coveredPixels) * PERCENT / ((long) width * height),
+                Math.abs((double) cols / resolution / aspect - 1) * PERCENT));
+        QUALITY.add(String.format("%-60s %10s %10.2f %10.2f %10.2f", prefix + "area-weighted tiles",
+                areaCols + "x" + areaRows, 0.0, 0.0,
+                Math.abs((double) areaCols / areaRows / aspect - 1) * PERCENT));
+    }
+
+    /**
+     * measures the overlap of two ranges.
+     * @param start       the start of the first range
+     * @param length      the length of the first range
+     * @param otherStart  the start of the second range
+     * @param otherLength the length of the second range
+     * @return the length of the overlap
+     * */
+    private static long overlap(int start, int length, int otherStart, int otherLength) {
+        return Math.max(0, Math.min(start + length, otherStart + otherLength) - Math.max(start, otherStart));
+    }
+
+    /**
+     * runs an operation for the warm-up time and then for the measurement time,
+     * and reports its throughput and allocation.
+     * @param name      the name of the benchmark
+     * @param operation the operation, its result is consumed so it cannot be optimized away
+     * */
+    private static void measure(String name, Supplier<Object> operation) {
+        long threadId = Thread.currentThread().getId();
+        run(operation, timeMs * NANOS_PER_MS);
+        long allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        long ops = run(operation, timeMs * NANOS_PER_MS);
+        long elapsed = System.nanoTime() - start;
+        long allocated = THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        REPORT.add(String.format("%-60s %14.2f %16d", name,
+                ops * NANOS_PER_SECOND / elapsed, allocated / ops));
+    }
+
+    private static long run(Supplier<Object> operation, long nanos) {
+        long end = System.nanoTime() + nanos;
+        long ops = 0;
+        while (ops < MIN_OPS || System.nanoTime() < end) {
+            sink = operation.get();
+            ops++;
+        }
+        return ops;
+    }
+
+    /**
+     * writes a synthetic image with smooth gradients and noise, so every tile differs.
+     * @param megapixels the size of the image
+     * @return the written file
+     * @throws IOException if the file cannot be written
+     * */
+    private static File writeSyntheticImage(int megapixels) throws IOException {
+        int width = (int) Math.sqrt(megapixels * (double) MEGAPIXEL * 4 / 3);
+        int height = megapixels * MEGAPIXEL / width;
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(megapixels);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int red = (x * 255 / width + random.nextInt(16)) & 0xFF;
+                int green = (y * 255 / height + random.nextInt(16)) & 0xFF;
+                int blue = ((x + y) & 0xFF);
+                row[x] = (red << 16) | (green << 8) | blue;
+            }
+            image.setRGB(0, y, width, 1, row, 0, width);
+        }
+        File file = File.createTempFile("benchmark" + megapixels + "mp", ".png");
+        ImageIO.write(image, "png", file);
+        return file;
+    }
+
+    private static int[] parseList(String value) {
+        String[] parts = value.split(",");
+        int[] result = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            result[i] = Integer.parseInt(parts[i].trim());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,218 @@
+package image;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Rectangle;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.function.IntConsumer;
+
+/**
+ * Reads the tile brightness of an image file one band of tile rows at a time,
+ * without ever decoding the whole image.
+ * The tiles are the ones of the image padded by ImageProcessor.padImageWithWhite,
+ * the padding is accounted for analytically, so each row is the same as the matching
+ * row of ImageProcessor.calculateBrightnessGrid, down to the fixed-point brightness.
+ * Memory stays O(image width * band height) however tall the image is.
+ */
+public class BandBrightnessReader implements Closeable {
+
+    /** the default number of decoded pixels a band may hold */
+    public static final long DEFAULT_BAND_PIXELS = 16L * 1024 * 1024;
+
+    private final ImageInputStream input;
+    private final ImageReader reader;
+    private final int width;
+    private final int height;
+    private final long bandPixels;
+
+    /**
+     * A consumer of the brightness rows, in order from the top.
+     */
+    public interface RowConsumer {
+        /**
+         * @param row        the tile row
+         * @param brightness the brightness of each tile of the row, a grid of one row reused between rows
+         * */
+        void accept(int row, BrightnessGrid brightness);
+    }
+
+    /**
+     * opens an image file, only its header is read.
+     * @param filename the image file
+     * @throws IOException if the file cannot be read or its format is not supported
+     * */
+    public BandBrightnessReader(String filename) throws IOException {
+        this(filename, DEFAULT_BAND_PIXELS);
+    }
+
+    /**
+     * opens an image file, only its header is read.
+     * @param filename   the image file
+     * @param bandPixels the number of decoded pixels a band may hold,
+     *                   a band always holds at least one tile row
+     * @throws IOException if the file cannot be read or its format is not supported
+     * */
+    public BandBrightnessReader(String filename, long bandPixels) throws IOException {
+        this.input = ImageIO.createImageInputStream(new File(filename));
+        if (input == null) {
+            throw new IOException("Cannot open " + filename);
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            input.close();
+            throw new IOException("Unsupported image format: " + filename);
+        }
+        this.reader = readers.next();
+        reader.setInput(input, true, true);
+        this.width = reader.getWidth(0);
+        this.height = reader.getHeight(0);
+        this.bandPixels = bandPixels;
+    }
+
+    /**
+     * getWidth()
+     * @return the width of the image, before padding
+     * */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * getHeight()
+     * @return the height of the image, before padding
+     * */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * getPaddedHeight()
+     * @return the height of the image padded by ImageProcessor.padImageWithWhite
+     * */
+    public int getPaddedHeight() {
+        return ImageProcessor.findClosestPowerTwo(height);
+    }
+
+    /**
+     * Counts the tile columns at a resolution, like ImageProcessor.countTileColumns
+     * @param resolution the number of tile rows
+     * @return the number of tile columns
+     * */
+    public int countTileColumns(int resolution) {
+        int side = ImageProcessor.findClosestPowerTwo(height) / resolution;
+        return ImageProcessor.findClosestPowerTwo(width) / side;
+    }
+
+    /**
+     * reads the brightness of every tile row, decoding one band of tile rows at a time.
+     * every row has the exact sums, so its brightness and fixed-point brightness are the ones
+     * of the matching row of ImageProcessor.calculateBrightnessGrid.
+     * @param resolution the number of tile rows
+     * @param consumer   receives the rows in order
+     * @throws IOException if the image cannot be decoded
+     * */
+    public void readRows(int resolution, RowConsumer consumer) throws IOException {
+        long[] sums = new long[countTileColumns(resolution)];
+        BrightnessGrid grid = new BrightnessGrid(sums, tileMax(resolution), 1, sums.length);
+        readRowSums(resolution, sums, row -> consumer.accept(row, grid));
+    }
+
+    /**
+     * reads the brightness of every tile, decoding one band of tile rows at a time,
+     * only the sums of the tiles are kept.
+     * @param resolution the number of tile rows
+     * @return the same grid as ImageProcessor.calculateBrightnessGrid
+     * @throws IOException if the image cannot be decoded
+     * */
+    public BrightnessGrid readGrid(int resolution) throws IOException {
+        int numCols = countTileColumns(resolution);
+        long[] sums = new long[numCols];
+        long[] grid = new long[resolution * numCols];
+        readRowSums(resolution, sums, row -> System.arraycopy(sums, 0, grid, row * numCols, numCols));
+        return new BrightnessGrid(grid, tileMax(resolution), resolution, numCols);
+    }
+
+    /**
+     * sums the luminance of every tile row, the white padding included.
+     * @param resolution the number of tile rows
+     * @param sums       receives the sums of each row, countTileColumns long
+     * @param rowDone    called with the tile row once its sums are filled
+     * @throws IOException if the image cannot be decoded
+     * */
+    private void readRowSums(int resolution, long[] sums, IntConsumer rowDone) throws IOException {
+        int side = ImageProcessor.findClosestPowerTwo(height) / resolution;
+        int numCols = sums.length;
+        int paddingTop = ImageProcessor.paddingBefore(height);
+        int paddingLeft = ImageProcessor.paddingBefore(width);
+        int rowsPerBand = (int) Math.max(1, Math.min(resolution, bandPixels / ((long) width * side)));
+
+        long[] covered = new long[numCols];
+        int[] pixelRow = new int[width];
+        for (int bandStart = 0; bandStart < resolution; bandStart += rowsPerBand) {
+            int bandEnd = Math.min(resolution, bandStart + rowsPerBand);
+            int top = Math.max(0, bandStart * side - paddingTop);
+            int bottom = Math.min(height, bandEnd * side - paddingTop);
+            Image band = top < bottom ? readBand(top, bottom) : null;
+            for (int row = bandStart; row < bandEnd; row++) {
+                int rowTop = Math.max(top, row * side - paddingTop);
+                int rowBottom = Math.min(bottom, (row + 1) * side - paddingTop);
+                Arrays.fill(sums, 0);
+                Arrays.fill(covered, 0);
+                for (int y = rowTop; y < rowBottom; y++) {
+                    band.getRGBRow(y - top, pixelRow);
+                    for (int col = 0; col < numCols; col++) {
+                        int from = Math.max(0, col * side - paddingLeft);
+                        int to = Math.min(width, (col + 1) * side - paddingLeft);
+                        if (from < to) {
+                            sums[col] += ImageProcessor.sumScaledLuminance(pixelRow, from, to);
+                            covered[col] += to - from;
+                        }
+                    }
+                }
+                for (int col = 0; col < numCols; col++) {
+                    long white = (long) side * side - covered[col];
+                    sums[col] += white * ImageProcessor.MAX_SCALED_LUMINANCE;
+                }
+                rowDone.accept(row);
+            }
+        }
+    }
+
+    /**
+     * the sum of a white tile at a resolution.
+     * @param resolution the number of tile rows
+     * @return the sum of a white tile
+     * */
+    private long tileMax(int resolution) {
+        long side = ImageProcessor.findClosestPowerTwo(height) / resolution;
+        return side * side * ImageProcessor.MAX_SCALED_LUMINANCE;
+    }
+
+    /**
+     * decodes the full-width band of the given source rows.
+     * @param top    the first row of the band
+     * @param bottom the row after the last row of the band
+     * @return the decoded band
+     * @throws IOException if the band cannot be decoded
+     * */
+    private Image readBand(int top, int bottom) throws IOException {
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceRegion(new Rectangle(0, top, width, bottom - top));
+        return new Image(reader.read(0, param));
+    }
+
+    /**
+     * closes the image file.
+     * */
+    @Override
+    public void close() throws IOException {
+        reader.dispose();
+        input.close();
+    }
+}
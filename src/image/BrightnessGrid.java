@@ -0,0 +1,102 @@
+package image;
+
+/**
+ * The brightness of every tile of an image at one resolution, row-major.
+ * Each tile keeps its exact integer luminance sum, so grids can be aggregated
+ * without any rounding: the brightness of a 2x2 block of tiles is exactly
+ * the brightness of the tile covering it.
+ * The brightness is also given as a Q16 fixed-point integer, computed with integer division only,
+ * so a grid maps to chars without any floating point and the same on every JVM.
+ */
+public class BrightnessGrid {
+    /** the fraction bits of the fixed-point brightness */
+    public static final int FIXED_SHIFT = 16;
+    /** the fixed-point brightness of a white tile */
+    public static final int FIXED_ONE = 1 << FIXED_SHIFT;
+    private static final int BLOCK = 2;
+    private static final int HALF_OF = 2;
+    private static final int MAX_DIVISOR_BITS = Long.SIZE - 2 - FIXED_SHIFT; // a shifted sum plus rounding fits
+
+    private final long[] sums;
+    private final long tileMax;
+    private final int rows;
+    private final int cols;
+    private final int reduction;
+    private final long divisor;
+
+    /**
+     * BrightnessGrid constructor.
+     * @param sums    the scaled luminance sum of each tile, row-major, used as is (not copied)
+     * @param tileMax the sum of a white tile
+     * @param rows    the number of tile rows
+     * @param cols    the number of tile columns
+     * */
+    public BrightnessGrid(long[] sums, long tileMax, int rows, int cols) {
+        this.sums = sums;
+        this.tileMax = tileMax;
+        this.rows = rows;
+        this.cols = cols;
+        this.reduction = Math.max(0, Long.SIZE - Long.numberOfLeadingZeros(tileMax) - MAX_DIVISOR_BITS);
+        this.divisor = tileMax >> reduction;
+    }
+
+    /**
+     * getRows()
+     * @return the number of tile rows
+     * */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * getCols()
+     * @return the number of tile columns
+     * */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * get()
+     * @param row the tile row
+     * @param col the tile column
+     * @return the brightness of the tile, between 0 and 1
+     * */
+    public double get(int row, int col) {
+        return sums[row * cols + col] / (double) tileMax;
+    }
+
+    /**
+     * getFixed()
+     * The brightness rounded to the nearest multiple of 1 / FIXED_ONE, at most 2^-17 from get.
+     * When the sum of a white tile needs more than 46 bits, the sums and the white sum are
+     * first shifted down to 46 bits, which moves the brightness by less than 2^-45 more.
+     * @param row the tile row
+     * @param col the tile column
+     * @return the fixed-point brightness of the tile, between 0 and FIXED_ONE
+     * */
+    public int getFixed(int row, int col) {
+        return (int) ((((sums[row * cols + col] >> reduction) << FIXED_SHIFT) + divisor / HALF_OF) / divisor);
+    }
+
+    /**
+     * aggregates every 2x2 block of tiles into one tile, giving the grid of half the resolution.
+     * an odd last row or column has no block and is dropped, like the tiling does.
+     * @return the grid of tiles twice as large
+     * */
+    public BrightnessGrid downsample() {
+        int coarseRows = rows / BLOCK;
+        int coarseCols = cols / BLOCK;
+        long[] coarse = new long[coarseRows * coarseCols];
+        for (int row = 0; row < coarseRows; row++) {
+            int top = row * BLOCK * cols;
+            int bottom = top + cols;
+            for (int col = 0; col < coarseCols; col++) {
+                int left = col * BLOCK;
+                coarse[row * coarseCols + col] = sums[top + left] + sums[top + left + 1]
+                        + sums[bottom + left] + sums[bottom + left + 1];
+            }
+        }
+        return new BrightnessGrid(coarse, tileMax * BLOCK * BLOCK, coarseRows, coarseCols);
+    }
+}
@@ -0,0 +1,240 @@
+package image;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * An on-disk cache of decoded images.
+ * Every entry is a raw file, a header and then the packed ARGB pixels of the image, row-major.
+ * A load of a cached image maps the entry with FileChannel.map instead of decoding the image again,
+ * so the pixels live in the page cache and not on the heap.
+ * An entry is named by the path of its image and remembers the size and modification time
+ * of the image, an entry that does not match them is stale and is decoded again.
+ * When the entries exceed the budget, the least recently used ones are deleted.
+ * The temporary files of writes that never finished are deleted once they are STALE_TEMP_MILLIS old,
+ * younger ones may still be written by another process and count against the budget.
+ * An image whose entry would exceed the 2 GB a single mapping covers is not cached, it is decoded every time.
+ * */
+public class DecodedPixelCache {
+    /** the default budget of the cache, in bytes. */
+    public static final long DEFAULT_BUDGET = 1L << 30;
+
+    private static final int MAGIC = 0x50495843; // "PIXC"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final long MAX_ENTRY_BYTES = Integer.MAX_VALUE; // the most one MappedByteBuffer maps
+    private static final String SUFFIX = ".pixels";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final long STALE_TEMP_MILLIS = 10 * 60 * 1000L;
+
+    private final Path directory;
+    private final long budget;
+
+    /**
+     * A constructor for DecodedPixelCache class
+     * @param directory the directory of the entries, created if needed
+     * @param budget    the maximal total size of the entries, in bytes
+     * @throws IOException if the directory cannot be created
+     * */
+    public DecodedPixelCache(Path directory, long budget) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.budget = budget;
+    }
+
+    /**
+     * loads an image, from its entry when it is up to date, otherwise by decoding it
+     * and storing a new entry, unless the entry would be too large to map.
+     * @param filename the image file
+     * @return the image, backed by the mapped entry
+     * @throws IOException if the image cannot be read
+     * */
+    public Image load(String filename) throws IOException {
+        Path source = Path.of(filename).toAbsolutePath().normalize();
+        BasicFileAttributes attributes = Files.readAttributes(source, BasicFileAttributes.class);
+        long size = attributes.size();
+        long modified = attributes.lastModifiedTime().toMillis();
+        Path entry = directory.resolve(entryName(source));
+        if (Files.exists(entry)) {
+            Image cached = map(entry, size, modified);
+            if (cached != null) {
+                Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+                return cached;
+            }
+            Files.deleteIfExists(entry);
+        }
+        Image image = new Image(filename);
+        if (HEADER_BYTES + (long) image.getWidth() * image.getHeight() * Integer.BYTES > MAX_ENTRY_BYTES) {
+            return image;
+        }
+        write(entry, image, size, modified);
+        evict(entry);
+        Image cached = map(entry, size, modified);
+        return cached != null ? cached : image;
+    }
+
+    /**
+     * maps an entry.
+     * @param entry    the entry file
+     * @param size     the expected size of the image file
+     * @param modified the expected modification time of the image file
+     * @return the image of the entry, or null if the entry is stale or broken
+     * @throws IOException if the entry cannot be read
+     * */
+    private static Image map(Path entry, long size, long modified) throws IOException {
+        try (FileChannel channel = FileChannel.open(entry, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES || channel.size() > MAX_ENTRY_BYTES) {
+                return null;
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mapped.order(ByteOrder.nativeOrder());
+            if (mapped.getInt() != MAGIC || mapped.getInt() != VERSION
+                    || mapped.getLong() != size || mapped.getLong() != modified) {
+                return null;
+            }
+            int width = mapped.getInt();
+            int height = mapped.getInt();
+            if (width <= 0 || height <= 0 || channel.size() != HEADER_BYTES + (long) width * height * Integer.BYTES) {
+                return null;
+            }
+            IntBuffer pixels = mapped.position(HEADER_BYTES).slice().order(ByteOrder.nativeOrder()).asIntBuffer();
+            return new Image(pixels, width, height);
+        }
+    }
+
+    /**
+     * writes an entry to a temporary file and moves it into place,
+     * so a concurrent load never sees a partial entry.
+     * @param entry    the entry file
+     * @param image    the decoded image
+     * @param size     the size of the image file
+     * @param modified the modification time of the image file
+     * @throws IOException if the entry cannot be written
+     * */
+    private void write(Path entry, Image image, long size, long modified) throws IOException {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        Path temp = Files.createTempFile(directory, entry.getFileName().toString(), TEMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.nativeOrder());
+            header.putInt(MAGIC).putInt(VERSION).putLong(size).putLong(modified).putInt(width).putInt(height);
+            writeFully(channel, header.flip());
+            ByteBuffer rowBytes = ByteBuffer.allocate(width * Integer.BYTES).order(ByteOrder.nativeOrder());
+            IntBuffer rowInts = rowBytes.asIntBuffer();
+            int[] row = new int[width];
+            for (int y = 0; y < height; y++) {
+                image.getRGBRow(y, row);
+                rowInts.clear();
+                rowInts.put(row);
+                rowBytes.clear();
+                writeFully(channel, rowBytes);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        try {
+            Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * deletes the stale temporary files, then the least recently used entries
+     * until the entries and the remaining temporary files fit in the budget.
+     * @param keep an entry that is never deleted
+     * @throws IOException if the directory cannot be listed
+     * */
+    private void evict(Path keep) throws IOException {
+        List<Path> entries = new ArrayList<>();
+        List<Path> temps = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                String name = file.getFileName().toString();
+                if (name.endsWith(SUFFIX)) {
+                    entries.add(file);
+                } else if (name.endsWith(TEMP_SUFFIX)) {
+                    temps.add(file);
+                }
+            });
+        }
+        long total = 0;
+        long staleBefore = System.currentTimeMillis() - STALE_TEMP_MILLIS;
+        for (Path temp : temps) {
+            if (lastUsed(temp) < staleBefore) {
+                Files.deleteIfExists(temp);
+            } else {
+                total += sizeOf(temp);
+            }
+        }
+        for (Path entry : entries) {
+            total += sizeOf(entry);
+        }
+        entries.sort(Comparator.comparingLong(DecodedPixelCache::lastUsed));
+        for (Path entry : entries) {
+            if (total <= budget) {
+                return;
+            }
+            if (!entry.equals(keep)) {
+                total -= sizeOf(entry);
+                Files.deleteIfExists(entry);
+            }
+        }
+    }
+
+    private static long sizeOf(Path entry) {
+        try {
+            return Files.size(entry);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static long lastUsed(Path entry) {
+        try {
+            return Files.getLastModifiedTime(entry).toMillis();
+        } catch (IOException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    /**
+     * names the entry of an image by a hash of its absolute path.
+     * @param source the absolute path of the image
+     * @return the file name of the entry
+     * */
+    private static String entryName(Path source) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(source.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest) + SUFFIX;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
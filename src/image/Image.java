@@ -3,16 +3,30 @@ package image;
 import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
 import java.io.File;
 import java.io.IOException;
+import java.nio.IntBuffer;
 
 /**
  * A package-private class of the package image.
+ * Pixels are kept as one packed ARGB int per pixel, row-major,
+ * in an int array or in any other int buffer, such as a memory-mapped file.
  * @author Dan Nirel
  */
 public class Image {
 
-    private final Color[][] pixelArray;
+    private static final int OPAQUE = 0xFF000000;
+    private static final int BYTE_MASK = 0xFF;
+    private static final int RED_SHIFT = 16;
+    private static final int GREEN_SHIFT = 8;
+    private static final int ALPHA_SHIFT = 24;
+    private static final int BGR_BYTES = 3;
+    private static final int ABGR_BYTES = 4;
+
+    private final IntBuffer pixels;
     private final int width;
     private final int height;
 
@@ -21,18 +35,13 @@ public class Image {
      * */
     public Image(String filename) throws IOException {
         try {
-
             BufferedImage im = ImageIO.read(new File(filename));
+            if (im == null) {
+                throw new IOException("Unsupported image format: " + filename);
+            }
             width = im.getWidth();
             height = im.getHeight();
-
-
-            pixelArray = new Color[height][width];
-            for (int i = 0; i < height; i++) {
-                for (int j = 0; j < width; j++) {
-                    pixelArray[i][j] = new Color(im.getRGB(j, i));
-                }
-            }
+            pixels = IntBuffer.wrap(readPixels(im));
         }catch (IOException e) {
             throw new IOException(e);
         }
@@ -40,9 +49,61 @@ public class Image {
 
     /**
      * Image constructor.
+     * @param im a decoded image, its pixels are copied
+     * */
+    public Image(BufferedImage im) {
+        width = im.getWidth();
+        height = im.getHeight();
+        pixels = IntBuffer.wrap(readPixels(im));
+    }
+
+    /**
+     * Image constructor.
+     * kept for compatibility, the colors are packed into the pixel buffer.
      * */
     public Image(Color[][] pixelArray, int width, int height) {
-        this.pixelArray = pixelArray;
+        this.width = width;
+        this.height = height;
+        int[] packed = new int[width * height];
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                Color color = pixelArray[i][j];
+                packed[i * width + j] = color == null ? 0 : color.getRGB();
+            }
+        }
+        this.pixels = IntBuffer.wrap(packed);
+    }
+
+    /**
+     * Image constructor for views that compute their pixels, such as PaddedImage.
+     * such a view must override getRGB and getRGBRow(int, int[], int).
+     * @param width  the width of the image
+     * @param height the height of the image
+     * */
+    protected Image(int width, int height) {
+        this.pixels = null;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Image constructor.
+     * @param pixels packed ARGB pixels, row-major, the array is used as is (not copied)
+     * @param width  the width of the image
+     * @param height the height of the image
+     * */
+    public Image(int[] pixels, int width, int height) {
+        this(IntBuffer.wrap(pixels), width, height);
+    }
+
+    /**
+     * Image constructor.
+     * @param pixels packed ARGB pixels, row-major from index 0, the buffer is used as is (not copied)
+     * @param width  the width of the image
+     * @param height the height of the image
+     * */
+    public Image(IntBuffer pixels, int width, int height) {
+        this.pixels = pixels;
         this.width = width;
         this.height = height;
     }
@@ -64,24 +125,53 @@ public class Image {
     }
     /**
      *  getPixel()
-     * @param x the x coordinate of the pixe
+     *  compatibility accessor, allocates a Color, prefer getRGB on hot paths.
+     * @param x the row of the pixel
+     * @param y the column of the pixel
      * */
     public Color getPixel(int x, int y) {
-        return pixelArray[x][y];
+        return new Color(getRGB(x, y));
+    }
+
+    /**
+     * getRGB()
+     * @param row the row of the pixel
+     * @param col the column of the pixel
+     * @return the packed ARGB value of the pixel
+     * */
+    public int getRGB(int row, int col) {
+        return pixels.get(row * width + col);
     }
+
+    /**
+     * copies one row of packed ARGB pixels into the given buffer.
+     * @param row the row to copy
+     * @param dst the buffer to copy into, at least width long
+     * */
+    public void getRGBRow(int row, int[] dst) {
+        getRGBRow(row, dst, 0);
+    }
+
+    /**
+     * copies one row of packed ARGB pixels into the given buffer.
+     * @param row    the row to copy
+     * @param dst    the buffer to copy into
+     * @param offset the index of dst the row starts at
+     * */
+    public void getRGBRow(int row, int[] dst, int offset) {
+        pixels.get(row * width, dst, offset, width);
+    }
+
     /**
      * saveImage()
      * @param fileName the name of the file to save the image to
      * */
     public void saveImage(String fileName){
-        // Initialize BufferedImage, assuming Color[][] is already properly populated.
-        BufferedImage bufferedImage = new BufferedImage(pixelArray[0].length, pixelArray.length,
-                BufferedImage.TYPE_INT_RGB);
-        // Set each pixel of the BufferedImage to the color from the Color[][].
-        for (int x = 0; x < pixelArray.length; x++) {
-            for (int y = 0; y < pixelArray[x].length; y++) {
-                bufferedImage.setRGB(y, x, pixelArray[x][y].getRGB());
-            }
+        BufferedImage bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] row = new int[width];
+        for (int i = 0; i < height; i++) {
+            getRGBRow(i, row);
+            bufferedImage.setRGB(0, i, width, 1, row, 0, width);
         }
         File outputfile = new File(fileName+".jpeg");
         try {
@@ -91,4 +181,58 @@ public class Image {
         }
     }
 
+    /**
+     * reads all the pixels of a decoded image in bulk.
+     * the raster is read directly for the common int and byte layouts,
+     * any other layout goes through the color model.
+     * @param im the decoded image
+     * @return the packed ARGB pixels, row-major
+     * */
+    private static int[] readPixels(BufferedImage im) {
+        int w = im.getWidth();
+        int h = im.getHeight();
+        DataBuffer buffer = im.getRaster().getDataBuffer();
+        boolean packedRaster = im.getRaster().getMinX() == 0 && im.getRaster().getMinY() == 0
+                && im.getRaster().getParent() == null && buffer.getNumBanks() == 1;
+        if (packedRaster && buffer instanceof DataBufferInt intBuffer) {
+            if (im.getType() == BufferedImage.TYPE_INT_ARGB || im.getType() == BufferedImage.TYPE_INT_RGB) {
+                int[] data = intBuffer.getData();
+                int[] result = new int[w * h];
+                boolean forceOpaque = im.getType() == BufferedImage.TYPE_INT_RGB;
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = forceOpaque ? data[i] | OPAQUE : data[i];
+                }
+                return result;
+            }
+        } else if (packedRaster && buffer instanceof DataBufferByte byteBuffer) {
+            if (im.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+                return unpackBytes(byteBuffer.getData(), w * h, BGR_BYTES);
+            }
+            if (im.getType() == BufferedImage.TYPE_4BYTE_ABGR) {
+                return unpackBytes(byteBuffer.getData(), w * h, ABGR_BYTES);
+            }
+        }
+        return im.getRGB(0, 0, w, h, null, 0, w);
+    }
+
+    /**
+     * unpacks interleaved (A)BGR bytes into packed ARGB ints.
+     * @param data          the interleaved bytes
+     * @param count         the number of pixels
+     * @param bytesPerPixel 3 for BGR, 4 for ABGR
+     * @return the packed ARGB pixels
+     * */
+    private static int[] unpackBytes(byte[] data, int count, int bytesPerPixel) {
+        int[] result = new int[count];
+        int k = 0;
+        for (int i = 0; i < count; i++) {
+            int alpha = bytesPerPixel == ABGR_BYTES ? data[k++] & BYTE_MASK : BYTE_MASK;
+            int blue = data[k++] & BYTE_MASK;
+            int green = data[k++] & BYTE_MASK;
+            int red = data[k++] & BYTE_MASK;
+            result[i] = (alpha << ALPHA_SHIFT) | (red << RED_SHIFT) | (green << GREEN_SHIFT) | blue;
+        }
+        return result;
+    }
+
 }
@@ -1,22 +1,40 @@
 package image;
 
-import java.awt.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * Image processing class contains methods for processing images
  */
 public class ImageProcessor {
 
-    private static final double RED_CONTRAPTION = 0.2126;
-    private static final double GREEN_CONTRAPTION = 0.7152;
-    private static final double BLUE_CONTRAPTION = 0.0722;
     private static final int RGB_MAX = 255;
+    private static final int RED_WEIGHT = 2126;
+    private static final int GREEN_WEIGHT = 7152;
+    private static final int BLUE_WEIGHT = 722;
+    private static final int WEIGHT_SCALE = 10000;
+    static final long MAX_SCALED_LUMINANCE = (long) RGB_MAX * WEIGHT_SCALE;
+    private static final int RED_SHIFT = 16;
+    private static final int GREEN_SHIFT = 8;
+    private static final int BYTE_MASK = 0xFF;
     private static final int HALF_OF = 2;
     private static final int MULTIPLIER = 2;
+    private static final int CHANNELS = 3;
+    // pixels summed in an int before it is added to a long, 2^31 / MAX_SCALED_LUMINANCE is 842
+    private static final int REDUCTION_CHUNK = 512;
+
+    /**
+     * A summed-area lookup, the sum over the rectangle from the top left corner
+     * of the image without its padding.
+     */
+    private interface Prefix {
+        long at(int bottom, int right);
+    }
 
     /**
      * Gets the sub-images of the given image
+     * Kept as the reference path, calculateBrightnessGrid gives the same brightness
+     * without copying any pixel.
      * @param image      the image to get the sub-images of
      * @param resolution the resolution of the sub-images
      * @return a List of the sub-images
@@ -29,12 +47,12 @@ public class ImageProcessor {
         int numCols = imageWidth / side;
         for (int row = 0; row < resolution; row++) {
             for (int col = 0; col < numCols; col++) {
-                Color[][] subPixels = new Color[side][side];
+                int[] subPixels = new int[side * side];
                 for (int i = 0; i < side; i++) {
                     for (int j = 0; j < side; j++) {
                         int imageRow = row * side + i;
                         int imageCol = col * side + j;
-                        subPixels[i][j] = image.getPixel(imageRow, imageCol);
+                        subPixels[i * side + j] = image.getRGB(imageRow, imageCol);
                     }
                 }
                 subImages.add(new Image(subPixels, side, side));
@@ -45,6 +63,9 @@ public class ImageProcessor {
 
     /**
      * Calculates the brightness of the given image
+     * The luminance is summed row by row with the integer kernel, so the brightness is the
+     * luminance r * 0.2126 + g * 0.7152 + b * 0.0722 averaged without any rounding but the
+     * final division, and is the same as the brightness of calculateBrightnessGrid.
      *
      * @param image the image to calculate the brightness of
      * @return the brightness of the image
@@ -52,22 +73,436 @@ public class ImageProcessor {
     public static double calculateBrightness(Image image) {
         int length = image.getHeight();
         int width = image.getWidth();
-        double sum = 0;
+        int[] row = new int[width];
+        long sum = 0;
         for (int i = 0; i < length; i++) {
-            for (int j = 0; j < width; j++) {
-                Color pixel = image.getPixel(i, j);
-                if (pixel != null) {
-                    sum += pixel.getRed() * RED_CONTRAPTION +
-                            pixel.getGreen() * GREEN_CONTRAPTION +
-                            pixel.getBlue() * BLUE_CONTRAPTION;
+            image.getRGBRow(i, row);
+            sum += sumScaledLuminance(row, 0, width);
+        }
+        return sum / ((double) length * width * MAX_SCALED_LUMINANCE);
+    }
+
+    /**
+     * Builds the luminance summed-area table of the given image.
+     * Build it once per image and reuse it for every resolution.
+     * The table of a padded image only covers the original pixels,
+     * the white padding is added analytically.
+     *
+     * @param image the image to build the table of
+     * @return the luminance table of the image
+     */
+    public static LuminanceTable buildLuminanceTable(Image image) {
+        return new LuminanceTable(image);
+    }
+
+    /**
+     * Builds the luminance summed-area table of the given image, and when asked
+     * the summed-area tables of its color channels in the same pass over the pixels.
+     *
+     * @param image      the image to build the table of
+     * @param withColors true to sum the color channels too
+     * @return the luminance table of the image
+     */
+    public static LuminanceTable buildLuminanceTable(Image image, boolean withColors) {
+        return new LuminanceTable(image, withColors);
+    }
+
+    /**
+     * Calculates the brightness of every tile of the image the table was built of,
+     * giving the result of getSubImages followed by calculateBrightness
+     * (up to its floating point rounding) without creating any sub-image.
+     *
+     * @param table      the luminance table of the image
+     * @param resolution the number of tile rows
+     * @return the brightness of every tile
+     */
+    public static BrightnessGrid calculateBrightnessGrid(LuminanceTable table, int resolution) {
+        int numCols = countTileColumns(table, resolution);
+        long[] sums = new long[resolution * numCols];
+        calculateBrightnessRows(table, resolution, 0, resolution, sums);
+        return new BrightnessGrid(sums, tileMax(table, resolution), resolution, numCols);
+    }
+
+    /**
+     * Calculates the shape of every tile of the image the table was built of.
+     *
+     * @param table      the luminance table of the image
+     * @param resolution the number of tile rows
+     * @param cells      the number of cells along the side of a tile
+     * @return the shape of every tile
+     */
+    public static ShapeGrid calculateShapeGrid(LuminanceTable table, int resolution, int cells) {
+        int numCols = countTileColumns(table, resolution);
+        long[] bits = new long[resolution * numCols * ShapeGrid.wordsPerTile(cells)];
+        calculateShapeRows(table, resolution, cells, 0, resolution, bits);
+        return new ShapeGrid(bits, resolution, numCols, cells);
+    }
+
+    /**
+     * Calculates the luminance sums of a band of tile rows, so that bands can be
+     * calculated independently (and concurrently) into the same grid.
+     *
+     * @param table      the luminance table of the image
+     * @param resolution the number of tile rows
+     * @param fromRow    the first tile row of the band
+     * @param toRow      the tile row after the last row of the band
+     * @param sums       the row-major sums to fill, resolution * countTileColumns long
+     */
+    public static void calculateBrightnessRows(LuminanceTable table, int resolution,
+                                               int fromRow, int toRow, long[] sums) {
+        int side = table.getHeight() / resolution;
+        int numCols = table.getWidth() / side;
+        for (int row = fromRow; row < toRow; row++) {
+            int top = row * side;
+            for (int col = 0; col < numCols; col++) {
+                int left = col * side;
+                sums[row * numCols + col] = table.sum(top, left, top + side, left + side);
+            }
+        }
+    }
+
+    /**
+     * Calculates the brightness of every tile of a tiling of the image the table was built of
+     * into any number of rows and columns, over its original pixels without the padding.
+     * Tile edges fall at fractions of pixels, row edge r at r * height / rows and column edge c
+     * at c * width / cols, and a pixel crossed by an edge counts in every tile by the area it covers.
+     * Tiles are as large as the image allows in both directions, no pixel is dropped
+     * and no padding is added.
+     *
+     * @param table the luminance table of the image
+     * @param rows  the number of tile rows
+     * @param cols  the number of tile columns
+     * @return the brightness of every tile
+     */
+    public static BrightnessGrid calculateAreaBrightnessGrid(LuminanceTable table, int rows, int cols) {
+        long[] sums = new long[rows * cols];
+        calculateAreaBrightnessRows(table, rows, cols, 0, rows, sums);
+        return new BrightnessGrid(sums, areaTileMax(table), rows, cols);
+    }
+
+    /**
+     * Calculates the area-weighted luminance sums of a band of tile rows of
+     * calculateAreaBrightnessGrid, so that bands can be calculated independently
+     * (and concurrently) into the same grid.
+     * The sum of a tile is scaled by rows * cols, so the fractional edges stay integers:
+     * the prefix at an edge is the bilinear interpolation of the table at the four pixel
+     * corners around it, which is exactly the area-weighted prefix. The scaled prefixes may
+     * wrap around in long arithmetic, their differences, the tile sums, are still exact.
+     *
+     * @param table   the luminance table of the image
+     * @param rows    the number of tile rows
+     * @param cols    the number of tile columns
+     * @param fromRow the first tile row of the band
+     * @param toRow   the tile row after the last row of the band
+     * @param sums    the row-major sums to fill, rows * cols long
+     */
+    public static void calculateAreaBrightnessRows(LuminanceTable table, int rows, int cols,
+                                                   int fromRow, int toRow, long[] sums) {
+        AreaEdges edges = new AreaEdges(table, rows, cols);
+        long[] above = new long[cols + 1];
+        long[] below = new long[cols + 1];
+        edges.prefixes(table::originalPrefix, fromRow, above);
+        for (int row = fromRow; row < toRow; row++) {
+            edges.prefixes(table::originalPrefix, row + 1, below);
+            for (int col = 0; col < cols; col++) {
+                sums[row * cols + col] = below[col + 1] - below[col] - above[col + 1] + above[col];
+            }
+            long[] swap = above;
+            above = below;
+            below = swap;
+        }
+    }
+
+    /**
+     * Calculates the average colors of a band of tile rows of the tiling of
+     * calculateAreaBrightnessGrid, so that bands can be calculated independently
+     * (and concurrently) into the same colors.
+     *
+     * @param table   the luminance table of the image, built with colors
+     * @param rows    the number of tile rows
+     * @param cols    the number of tile columns
+     * @param fromRow the first tile row of the band
+     * @param toRow   the tile row after the last row of the band
+     * @param colors  the packed RGB color of every tile to fill, rows rows of cols
+     */
+    public static void calculateAreaColorRows(LuminanceTable table, int rows, int cols,
+                                              int fromRow, int toRow, int[][] colors) {
+        AreaEdges edges = new AreaEdges(table, rows, cols);
+        long scaledArea = (long) table.getOriginalHeight() * table.getOriginalWidth(); // a tile times rows * cols
+        long[][] above = new long[CHANNELS][cols + 1];
+        long[][] below = new long[CHANNELS][cols + 1];
+        Prefix[] prefixes = new Prefix[CHANNELS];
+        for (int channel = 0; channel < CHANNELS; channel++) {
+            int c = channel;
+            prefixes[channel] = (bottom, right) -> table.originalColorPrefix(c, bottom, right);
+            edges.prefixes(prefixes[channel], fromRow, above[channel]);
+        }
+        for (int row = fromRow; row < toRow; row++) {
+            for (int channel = 0; channel < CHANNELS; channel++) {
+                edges.prefixes(prefixes[channel], row + 1, below[channel]);
+            }
+            int[] line = colors[row];
+            for (int col = 0; col < cols; col++) {
+                int color = 0;
+                for (int channel = 0; channel < CHANNELS; channel++) {
+                    long sum = below[channel][col + 1] - below[channel][col]
+                            - above[channel][col + 1] + above[channel][col];
+                    color = (color << Byte.SIZE) | (int) ((sum + scaledArea / HALF_OF) / scaledArea);
                 }
+                line[col] = color;
+            }
+            long[][] swap = above;
+            above = below;
+            below = swap;
+        }
+    }
+
+    /**
+     * Finds the scaled luminance sum of a white tile of calculateAreaBrightnessGrid
+     *
+     * @param table the luminance table of the image
+     * @return the sum of a white tile, scaled like the tile sums by rows * cols
+     */
+    public static long areaTileMax(LuminanceTable table) {
+        return (long) table.getOriginalHeight() * table.getOriginalWidth() * MAX_SCALED_LUMINANCE;
+    }
+
+    /**
+     * Calculates the average colors of a band of tile rows, so that bands can be
+     * calculated independently (and concurrently) into the same colors.
+     *
+     * @param table      the luminance table of the image, built with colors
+     * @param resolution the number of tile rows
+     * @param fromRow    the first tile row of the band
+     * @param toRow      the tile row after the last row of the band
+     * @param colors     the packed RGB color of every tile to fill, resolution rows of countTileColumns
+     */
+    public static void calculateColorRows(LuminanceTable table, int resolution,
+                                          int fromRow, int toRow, int[][] colors) {
+        int side = table.getHeight() / resolution;
+        int numCols = table.getWidth() / side;
+        for (int row = fromRow; row < toRow; row++) {
+            int top = row * side;
+            int[] line = colors[row];
+            for (int col = 0; col < numCols; col++) {
+                int left = col * side;
+                line[col] = table.averageColor(top, left, top + side, left + side);
             }
         }
-        return sum / (length * width * RGB_MAX);
+    }
+
+    /**
+     * Calculates the shapes of a band of tile rows, so that bands can be
+     * calculated independently (and concurrently) into the same grid.
+     * Every tile is divided into cells x cells cells and a cell is set when its mean luminance
+     * is at least half white. When a tile is smaller than the cells, a cell
+     * takes the pixel it falls on.
+     * The cell edges of a tile row are shared by neighbouring cells and tiles, so the
+     * luminance prefixes at the edges are looked up once per tile row. Cells between the same
+     * edges, the cells of one pixel of a small tile, are thresholded once: every distinct row
+     * of a tile is thresholded into a row of cell bits, which is copied to the cell rows it covers.
+     *
+     * @param table      the luminance table of the image
+     * @param resolution the number of tile rows
+     * @param cells      the number of cells along the side of a tile, at most Long.SIZE
+     * @param fromRow    the first tile row of the band
+     * @param toRow      the tile row after the last row of the band
+     * @param bits       the row-major shape bits to fill, ShapeGrid.wordsPerTile(cells) longs per tile
+     */
+    public static void calculateShapeRows(LuminanceTable table, int resolution, int cells,
+                                          int fromRow, int toRow, long[] bits) {
+        int side = table.getHeight() / resolution;
+        int numCols = table.getWidth() / side;
+        int wordsPerTile = ShapeGrid.wordsPerTile(cells);
+        // the distinct edges of the cells within a tile, the cells between each two edges
+        // and the cell bits of a row those cells set
+        int edgeCount = Math.min(side, cells) + 1;
+        int tileEdges = edgeCount - 1;
+        int[] edges = new int[edgeCount];
+        int[] firstCell = new int[edgeCount];
+        long[] cellMask = new long[tileEdges];
+        for (int e = 0; e < edgeCount; e++) {
+            edges[e] = side >= cells ? e * side / cells : e;
+        }
+        for (int cell = 0; cell < cells; cell++) {
+            int e = side >= cells ? cell : cell * side / cells;
+            cellMask[e] |= 1L << cell;
+            firstCell[e + 1] = cell + 1;
+        }
+        int columns = numCols * tileEdges + 1;
+        int[] edgeColumns = new int[columns];
+        for (int col = 0; col < numCols; col++) {
+            for (int e = 0; e < tileEdges; e++) {
+                edgeColumns[col * tileEdges + e] = col * side + edges[e];
+            }
+        }
+        edgeColumns[numCols * tileEdges] = numCols * side;
+        long[][] prefixes = new long[edgeCount][columns];
+        Arrays.fill(bits, fromRow * numCols * wordsPerTile, toRow * numCols * wordsPerTile, 0);
+        for (int row = fromRow; row < toRow; row++) {
+            for (int e = 0; e < edgeCount; e++) {
+                table.prefixRow(row * side + edges[e], edgeColumns, prefixes[e]);
+            }
+            for (int y = 0; y < tileEdges; y++) {
+                long[] above = prefixes[y];
+                long[] below = prefixes[y + 1];
+                long height = edges[y + 1] - edges[y];
+                for (int col = 0; col < numCols; col++) {
+                    int first = col * tileEdges;
+                    long cellRow = 0;
+                    for (int x = 0; x < tileEdges; x++) {
+                        int left = first + x;
+                        long sum = below[left + 1] - above[left + 1] - below[left] + above[left];
+                        long pixels = height * (edges[x + 1] - edges[x]);
+                        if (2 * sum >= pixels * MAX_SCALED_LUMINANCE) {
+                            cellRow |= cellMask[x];
+                        }
+                    }
+                    if (cellRow == 0) {
+                        continue;
+                    }
+                    int offset = (row * numCols + col) * wordsPerTile;
+                    for (int cellY = firstCell[y]; cellY < firstCell[y + 1]; cellY++) {
+                        int bit = cellY * cells;
+                        int word = offset + bit / Long.SIZE;
+                        int shift = bit % Long.SIZE;
+                        bits[word] |= cellRow << shift;
+                        if (shift + cells > Long.SIZE) {
+                            bits[word + 1] |= cellRow >>> (Long.SIZE - shift);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the luminance sum of a white tile
+     *
+     * @param table      the luminance table of the image
+     * @param resolution the number of tile rows
+     * @return the sum of a white tile, the sum of a tile over it is its brightness
+     */
+    public static long tileMax(LuminanceTable table, int resolution) {
+        long side = table.getHeight() / resolution;
+        return side * side * MAX_SCALED_LUMINANCE;
+    }
+
+    /**
+     * Counts the tile columns of the image the table was built of
+     *
+     * @param table      the luminance table of the image
+     * @param resolution the number of tile rows
+     * @return the number of tile columns
+     */
+    public static int countTileColumns(LuminanceTable table, int resolution) {
+        return table.getWidth() / (table.getHeight() / resolution);
+    }
+
+    /**
+     * The fractional edges of an area-weighted tiling: every edge lies in a pixel,
+     * at its index plus a fraction counted in 1 / rows (or 1 / cols).
+     */
+    private static final class AreaEdges {
+        private final int height;
+        private final int width;
+        private final int rows;
+        private final int cols;
+        private final int[] columns;
+        private final long[] columnFractions;
+
+        AreaEdges(LuminanceTable table, int rows, int cols) {
+            this.height = table.getOriginalHeight();
+            this.width = table.getOriginalWidth();
+            this.rows = rows;
+            this.cols = cols;
+            this.columns = new int[cols + 1];
+            this.columnFractions = new long[cols + 1];
+            for (int c = 0; c <= cols; c++) {
+                long position = (long) c * width;
+                columns[c] = (int) (position / cols);
+                columnFractions[c] = position % cols;
+            }
+        }
+
+        /**
+         * interpolates the prefixes at a row edge and every column edge, scaled by rows * cols.
+         * @param prefix the summed-area lookup
+         * @param edge   the row edge
+         * @param out    the cols + 1 prefixes to fill
+         */
+        void prefixes(Prefix prefix, int edge, long[] out) {
+            long position = (long) edge * height;
+            int top = (int) (position / rows);
+            long down = position % rows;
+            int bottom = Math.min(top + 1, height);
+            for (int c = 0; c <= cols; c++) {
+                int left = columns[c];
+                long across = columnFractions[c];
+                int right = Math.min(left + 1, width);
+                long upper = (cols - across) * prefix.at(top, left) + across * prefix.at(top, right);
+                long lower = (cols - across) * prefix.at(bottom, left) + across * prefix.at(bottom, right);
+                out[c] = (rows - down) * upper + down * lower;
+            }
+        }
+    }
+
+    /**
+     * Calculates the luminance of a single pixel in integer units,
+     * the contraption factors 0.2126, 0.7152 and 0.0722 scaled by WEIGHT_SCALE.
+     *
+     * @param pixel the packed ARGB pixel
+     * @return the scaled luminance of the pixel, between 0 and 255 * WEIGHT_SCALE
+     */
+    static int scaledLuminance(int pixel) {
+        return ((pixel >> RED_SHIFT) & BYTE_MASK) * RED_WEIGHT +
+                ((pixel >> GREEN_SHIFT) & BYTE_MASK) * GREEN_WEIGHT +
+                (pixel & BYTE_MASK) * BLUE_WEIGHT;
+    }
+
+    /**
+     * Calculates the scaled luminance of every pixel of a row.
+     * The loop has no branch and no dependency between pixels, once scaledLuminance is inlined
+     * only int shifts, masks, multiplications and additions, so the JIT compiles it to SIMD instructions
+     * that unpack and weigh as many pixels at once as the vector registers hold.
+     *
+     * @param pixels    the packed ARGB pixels
+     * @param luminance receives the scaled luminance of every pixel
+     * @param length    the number of pixels
+     */
+    static void scaledLuminanceRow(int[] pixels, int[] luminance, int length) {
+        for (int i = 0; i < length; i++) {
+            luminance[i] = scaledLuminance(pixels[i]);
+        }
+    }
+
+    /**
+     * Sums the scaled luminance of a range of pixels.
+     * Chunks of pixels are summed in an int, which cannot overflow within a chunk,
+     * so the inner loop is a plain int reduction the JIT vectorizes,
+     * and only the chunk sums are added as longs.
+     *
+     * @param pixels the packed ARGB pixels
+     * @param from   the first pixel of the range
+     * @param to     the pixel after the last pixel of the range
+     * @return the total scaled luminance of the range
+     */
+    static long sumScaledLuminance(int[] pixels, int from, int to) {
+        long sum = 0;
+        for (int start = from; start < to; start += REDUCTION_CHUNK) {
+            int end = Math.min(to, start + REDUCTION_CHUNK);
+            int chunk = 0;
+            for (int i = start; i < end; i++) {
+                chunk += scaledLuminance(pixels[i]);
+            }
+            sum += chunk;
+        }
+        return sum;
     }
 
     /**
      * Pads the image with white so that it is a power of two
+     * The padded image is a view over the original, no pixel is copied.
      *
      * @param original the image to pad
      * @return the padded image
@@ -77,23 +512,9 @@ public class ImageProcessor {
         int originalWidth = original.getWidth();
         int newHeight = findClosestPowerTwo(originalHeight);
         int newWidth = findClosestPowerTwo(originalWidth);
-        int paddingTop = (newHeight - originalHeight) / HALF_OF;
-        int paddingLeft = (newWidth - originalWidth) / HALF_OF;
-
-        Color[][] newPixels = new Color[newHeight][newWidth];
-        // Fill with white
-        for (int i = 0; i < newHeight; i++) {
-            for (int j = 0; j < newWidth; j++) {
-                newPixels[i][j] = Color.WHITE;
-            }
-        }
-        // Copy original image into the center
-        for (int i = 0; i < originalHeight; i++) {
-            for (int j = 0; j < originalWidth; j++) {
-                newPixels[i + paddingTop][j + paddingLeft] = original.getPixel(i, j);
-            }
-        }
-        return new Image(newPixels, newWidth, newHeight);
+        int paddingTop = paddingBefore(originalHeight);
+        int paddingLeft = paddingBefore(originalWidth);
+        return new PaddedImage(original, newWidth, newHeight, paddingTop, paddingLeft);
     }
 
     /**
@@ -102,7 +523,7 @@ public class ImageProcessor {
      * @param value the value to find the closest power of two to
      * @return the closest power of two to the given value
      */
-    private static int findClosestPowerTwo(int value) {
+    static int findClosestPowerTwo(int value) {
         if (value <= 0) return 1;
         int power = 1;
         while (power < value) {
@@ -110,4 +531,14 @@ public class ImageProcessor {
         }
         return power;
     }
+
+    /**
+     * Finds the white padding padImageWithWhite adds before (above or left of) the image
+     *
+     * @param value the height or width of the image
+     * @return the number of white pixels before the image
+     */
+    static int paddingBefore(int value) {
+        return (findClosestPowerTwo(value) - value) / HALF_OF;
+    }
 }
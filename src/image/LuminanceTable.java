@@ -0,0 +1,248 @@
+package image;
+
+/**
+ * A summed-area table of the luminance of an image.
+ * Built once per image, it gives the total luminance of any rectangle of pixels
+ * with four lookups, so tile brightness at any resolution costs O(1).
+ * Luminance is summed as scaled integers so the table never drifts,
+ * a white rectangle always sums to exactly its area times the maximal luminance.
+ * The table of a PaddedImage only covers the original image,
+ * rectangles reaching into the padding add its white analytically.
+ * A table built with colors also sums every RGB channel in the same pass over the pixels,
+ * giving the average color of any rectangle with four lookups as well.
+ */
+public class LuminanceTable {
+
+    private static final int CHANNELS = 3;
+    private static final int RED_SHIFT = 16;
+    private static final int GREEN_SHIFT = 8;
+    private static final int BYTE_MASK = 0xFF;
+    private static final int RGB_MAX = 255;
+
+    private final long[] sums;
+    private final long[] colorSums;
+    private final int width;
+    private final int height;
+    private final int originalWidth;
+    private final int originalHeight;
+    private final int paddingTop;
+    private final int paddingLeft;
+    private final int stride;
+
+    /**
+     * builds the table of the given image.
+     * @param image the image to build the table of
+     * */
+    LuminanceTable(Image image) {
+        this(image, false);
+    }
+
+    /**
+     * builds the table of the given image, with or without the sums of the color channels.
+     * @param image      the image to build the table of
+     * @param withColors true to sum the red, green and blue channels too
+     * */
+    LuminanceTable(Image image, boolean withColors) {
+        this.width = image.getWidth();
+        this.height = image.getHeight();
+        Image original = image;
+        if (image instanceof PaddedImage padded) {
+            original = padded.getOriginal();
+            this.paddingTop = padded.getPaddingTop();
+            this.paddingLeft = padded.getPaddingLeft();
+        } else {
+            this.paddingTop = 0;
+            this.paddingLeft = 0;
+        }
+        this.originalWidth = original.getWidth();
+        this.originalHeight = original.getHeight();
+        this.stride = originalWidth + 1;
+        this.sums = new long[(originalHeight + 1) * stride];
+        this.colorSums = withColors ? new long[(originalHeight + 1) * stride * CHANNELS] : null;
+        int[] row = new int[originalWidth];
+        int[] luminance = new int[originalWidth];
+        for (int i = 0; i < originalHeight; i++) {
+            original.getRGBRow(i, row);
+            ImageProcessor.scaledLuminanceRow(row, luminance, originalWidth); // vectorized, kept apart from the prefix
+            long rowSum = 0;
+            int above = i * stride;
+            int current = above + stride;
+            if (colorSums == null) {
+                for (int j = 0; j < originalWidth; j++) {
+                    rowSum += luminance[j];
+                    sums[current + j + 1] = sums[above + j + 1] + rowSum;
+                }
+                continue;
+            }
+            long redSum = 0;
+            long greenSum = 0;
+            long blueSum = 0;
+            for (int j = 0; j < originalWidth; j++) {
+                int pixel = row[j];
+                rowSum += luminance[j];
+                sums[current + j + 1] = sums[above + j + 1] + rowSum;
+                redSum += (pixel >> RED_SHIFT) & BYTE_MASK;
+                greenSum += (pixel >> GREEN_SHIFT) & BYTE_MASK;
+                blueSum += pixel & BYTE_MASK;
+                int cell = (current + j + 1) * CHANNELS;
+                int cellAbove = (above + j + 1) * CHANNELS;
+                colorSums[cell] = colorSums[cellAbove] + redSum;
+                colorSums[cell + 1] = colorSums[cellAbove + 1] + greenSum;
+                colorSums[cell + 2] = colorSums[cellAbove + 2] + blueSum;
+            }
+        }
+    }
+
+    /**
+     * getOriginalWidth()
+     * @return the width of the image without its padding
+     * */
+    public int getOriginalWidth() {
+        return originalWidth;
+    }
+
+    /**
+     * getOriginalHeight()
+     * @return the height of the image without its padding
+     * */
+    public int getOriginalHeight() {
+        return originalHeight;
+    }
+
+    /**
+     * hasColors()
+     * @return true if the table sums the color channels too
+     * */
+    public boolean hasColors() {
+        return colorSums != null;
+    }
+
+    /**
+     * getWidth()
+     * @return the width of the image the table was built of
+     * */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * getHeight()
+     * @return the height of the image the table was built of
+     * */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * sums the luminance of a rectangle of pixels.
+     * @param top    the first row of the rectangle
+     * @param left   the first column of the rectangle
+     * @param bottom the row after the last row of the rectangle
+     * @param right  the column after the last column of the rectangle
+     * @return the total scaled luminance of the rectangle
+     * */
+    public long sum(int top, int left, int bottom, int right) {
+        int clippedTop = clip(top - paddingTop, originalHeight);
+        int clippedBottom = clip(bottom - paddingTop, originalHeight);
+        int clippedLeft = clip(left - paddingLeft, originalWidth);
+        int clippedRight = clip(right - paddingLeft, originalWidth);
+        long whitePixels = (long) (bottom - top) * (right - left)
+                - (long) (clippedBottom - clippedTop) * (clippedRight - clippedLeft);
+        return sums[clippedBottom * stride + clippedRight] - sums[clippedTop * stride + clippedRight]
+                - sums[clippedBottom * stride + clippedLeft] + sums[clippedTop * stride + clippedLeft]
+                + whitePixels * ImageProcessor.MAX_SCALED_LUMINANCE;
+    }
+
+    /**
+     * sums the luminance of the rectangle from the top left corner of the image, so the sum
+     * of any rectangle is the inclusion-exclusion of the prefixes at its four corners.
+     * @param bottom the row after the last row of the rectangle
+     * @param right  the column after the last column of the rectangle
+     * @return the total scaled luminance of the rectangle
+     * */
+    public long prefix(int bottom, int right) {
+        int clippedBottom = clip(bottom - paddingTop, originalHeight);
+        int clippedRight = clip(right - paddingLeft, originalWidth);
+        long whitePixels = (long) bottom * right - (long) clippedBottom * clippedRight;
+        return sums[clippedBottom * stride + clippedRight] + whitePixels * ImageProcessor.MAX_SCALED_LUMINANCE;
+    }
+
+    /**
+     * finds the prefixes of one row at many columns, like prefix with the row clipped once.
+     * @param bottom the row after the last row of the rectangles
+     * @param rights the column after the last column of every rectangle
+     * @param out    the prefixes, as long as rights
+     * */
+    public void prefixRow(int bottom, int[] rights, long[] out) {
+        int clippedBottom = clip(bottom - paddingTop, originalHeight);
+        int rowStart = clippedBottom * stride;
+        for (int i = 0; i < rights.length; i++) {
+            int right = rights[i];
+            int clippedRight = clip(right - paddingLeft, originalWidth);
+            long whitePixels = (long) bottom * right - (long) clippedBottom * clippedRight;
+            out[i] = sums[rowStart + clippedRight] + whitePixels * ImageProcessor.MAX_SCALED_LUMINANCE;
+        }
+    }
+
+    /**
+     * sums the luminance of the rectangle from the top left corner of the image without its padding.
+     * @param bottom the row after the last row of the rectangle, in the image without padding
+     * @param right  the column after the last column of the rectangle, in the image without padding
+     * @return the total scaled luminance of the rectangle
+     * */
+    public long originalPrefix(int bottom, int right) {
+        return sums[bottom * stride + right];
+    }
+
+    /**
+     * sums a color channel over the rectangle from the top left corner of the image without its padding.
+     * @param channel 0 for red, 1 for green, 2 for blue
+     * @param bottom  the row after the last row of the rectangle, in the image without padding
+     * @param right   the column after the last column of the rectangle, in the image without padding
+     * @return the total of the channel over the rectangle
+     * @throws IllegalStateException if the table was built without colors
+     * */
+    public long originalColorPrefix(int channel, int bottom, int right) {
+        if (colorSums == null) {
+            throw new IllegalStateException("The table was built without colors");
+        }
+        return colorSums[(bottom * stride + right) * CHANNELS + channel];
+    }
+
+    /**
+     * averages the color of a rectangle of pixels, padding counts as white.
+     * @param top    the first row of the rectangle
+     * @param left   the first column of the rectangle
+     * @param bottom the row after the last row of the rectangle
+     * @param right  the column after the last column of the rectangle
+     * @return the average color as packed RGB, each channel rounded to the nearest value
+     * @throws IllegalStateException if the table was built without colors
+     * */
+    public int averageColor(int top, int left, int bottom, int right) {
+        if (colorSums == null) {
+            throw new IllegalStateException("The table was built without colors");
+        }
+        int clippedTop = clip(top - paddingTop, originalHeight);
+        int clippedBottom = clip(bottom - paddingTop, originalHeight);
+        int clippedLeft = clip(left - paddingLeft, originalWidth);
+        int clippedRight = clip(right - paddingLeft, originalWidth);
+        long pixels = (long) (bottom - top) * (right - left);
+        long whitePixels = pixels - (long) (clippedBottom - clippedTop) * (clippedRight - clippedLeft);
+        int topLeft = (clippedTop * stride + clippedLeft) * CHANNELS;
+        int topRight = (clippedTop * stride + clippedRight) * CHANNELS;
+        int bottomLeft = (clippedBottom * stride + clippedLeft) * CHANNELS;
+        int bottomRight = (clippedBottom * stride + clippedRight) * CHANNELS;
+        int color = 0;
+        for (int channel = 0; channel < CHANNELS; channel++) {
+            long sum = colorSums[bottomRight + channel] - colorSums[topRight + channel]
+                    - colorSums[bottomLeft + channel] + colorSums[topLeft + channel]
+                    + whitePixels * RGB_MAX;
+            color = (color << Byte.SIZE) | (int) ((sum + pixels / 2) / pixels);
+        }
+        return color;
+    }
+
+    private static int clip(int value, int size) {
+        return Math.max(0, Math.min(size, value));
+    }
+}
@@ -0,0 +1,78 @@
+package image;
+
+import java.util.Arrays;
+
+/**
+ * A view of an image centered in a larger white frame.
+ * No pixel is copied, a coordinate outside the original image reads as white.
+ */
+public class PaddedImage extends Image {
+    private static final int WHITE = 0xFFFFFFFF;
+
+    private final Image original;
+    private final int paddingTop;
+    private final int paddingLeft;
+
+    /**
+     * PaddedImage constructor.
+     * @param original    the image to pad
+     * @param width       the width of the padded image
+     * @param height      the height of the padded image
+     * @param paddingTop  the number of white rows above the original image
+     * @param paddingLeft the number of white columns left of the original image
+     * */
+    PaddedImage(Image original, int width, int height, int paddingTop, int paddingLeft) {
+        super(width, height);
+        this.original = original;
+        this.paddingTop = paddingTop;
+        this.paddingLeft = paddingLeft;
+    }
+
+    /**
+     * getOriginal()
+     * @return the image that is padded
+     * */
+    public Image getOriginal() {
+        return original;
+    }
+
+    /**
+     * getPaddingTop()
+     * @return the number of white rows above the original image
+     * */
+    public int getPaddingTop() {
+        return paddingTop;
+    }
+
+    /**
+     * getPaddingLeft()
+     * @return the number of white columns left of the original image
+     * */
+    public int getPaddingLeft() {
+        return paddingLeft;
+    }
+
+    @Override
+    public int getRGB(int row, int col) {
+        int originalRow = row - paddingTop;
+        int originalCol = col - paddingLeft;
+        if (originalRow < 0 || originalRow >= original.getHeight()
+                || originalCol < 0 || originalCol >= original.getWidth()) {
+            return WHITE;
+        }
+        return original.getRGB(originalRow, originalCol);
+    }
+
+    @Override
+    public void getRGBRow(int row, int[] dst, int offset) {
+        int originalRow = row - paddingTop;
+        if (originalRow < 0 || originalRow >= original.getHeight()) {
+            Arrays.fill(dst, offset, offset + getWidth(), WHITE);
+            return;
+        }
+        int originalEnd = offset + paddingLeft + original.getWidth();
+        Arrays.fill(dst, offset, offset + paddingLeft, WHITE);
+        original.getRGBRow(originalRow, dst, offset + paddingLeft);
+        Arrays.fill(dst, originalEnd, offset + getWidth(), WHITE);
+    }
+}
@@ -0,0 +1,80 @@
+package image;
+
+/**
+ * The shape of every tile of an image at one resolution, row-major.
+ * A tile is divided into cells x cells cells, each cell brighter than half white is a set bit,
+ * packed like the glyphs of the char matcher: row-major, bit i of a tile in word i / 64, bit i % 64.
+ */
+public class ShapeGrid {
+    private final long[] bits;
+    private final int rows;
+    private final int cols;
+    private final int cells;
+    private final int wordsPerTile;
+
+    /**
+     * ShapeGrid constructor.
+     * @param bits  the shape bits of each tile, row-major, used as is (not copied)
+     * @param rows  the number of tile rows
+     * @param cols  the number of tile columns
+     * @param cells the number of cells along the side of a tile
+     * */
+    public ShapeGrid(long[] bits, int rows, int cols, int cells) {
+        this.bits = bits;
+        this.rows = rows;
+        this.cols = cols;
+        this.cells = cells;
+        this.wordsPerTile = wordsPerTile(cells);
+    }
+
+    /**
+     * getRows()
+     * @return the number of tile rows
+     * */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * getCols()
+     * @return the number of tile columns
+     * */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * getCells()
+     * @return the number of cells along the side of a tile
+     * */
+    public int getCells() {
+        return cells;
+    }
+
+    /**
+     * getBits()
+     * @return the shape bits of all the tiles, shared, must not be modified
+     * */
+    public long[] getBits() {
+        return bits;
+    }
+
+    /**
+     * offsetOf()
+     * @param row the tile row
+     * @param col the tile column
+     * @return the index in getBits() of the first word of the tile
+     * */
+    public int offsetOf(int row, int col) {
+        return (row * cols + col) * wordsPerTile;
+    }
+
+    /**
+     * wordsPerTile()
+     * @param cells the number of cells along the side of a tile
+     * @return the number of longs holding the bits of one tile
+     * */
+    public static int wordsPerTile(int cells) {
+        return (cells * cells + Long.SIZE - 1) / Long.SIZE;
+    }
+}
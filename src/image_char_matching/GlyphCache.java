@@ -0,0 +1,174 @@
+package image_char_matching;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * GlyphCache class
+ * Caches the rendered glyphs of one font at one pixel resolution, so every char
+ * is rasterized through CharConverter at most once.
+ * A glyph is kept as a bitset of its pixels (row-major, a set bit is a pixel
+ * CharConverter reports as true), which also gives its density.
+ * The cache can be saved to and loaded from a small binary file, after loading
+ * no glyph of the file needs the AWT fonts again.
+ */
+public class GlyphCache {
+    private static final int MAGIC = 0x474C5946; // "GLYF"
+    private static final int VERSION = 1;
+    private static final int BITS_PER_WORD = Long.SIZE;
+    private static final int MAX_GLYPHS = 1 << Character.SIZE; // one glyph per char at most
+    private static final GlyphCache DEFAULT = new GlyphCache(CharConverter.FONT_NAME,
+            CharConverter.DEFAULT_PIXEL_RESOLUTION);
+
+    private final String fontName;
+    private final int pixelResolution;
+    private final int words;
+    private final Map<Character, long[]> glyphs = new ConcurrentHashMap<>();
+
+    /**
+     * creates an empty cache.
+     * @param fontName        the font the glyphs are rendered in
+     * @param pixelResolution the side of a glyph in pixels
+     * */
+    public GlyphCache(String fontName, int pixelResolution) {
+        this.fontName = fontName;
+        this.pixelResolution = pixelResolution;
+        this.words = (pixelResolution * pixelResolution + BITS_PER_WORD - 1) / BITS_PER_WORD;
+    }
+
+    /**
+     * getDefault method
+     * @return the cache of the font and resolution CharConverter uses by default
+     * */
+    public static GlyphCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * getPixelResolution method
+     * @return the side of a glyph in pixels
+     * */
+    public int getPixelResolution() {
+        return pixelResolution;
+    }
+
+    /**
+     * returns the glyph of a char, rendering it on the first request.
+     * @param c the char
+     * @return the glyph bitset, shared, must not be modified
+     * */
+    public long[] getGlyph(char c) {
+        return glyphs.computeIfAbsent(c, this::render);
+    }
+
+    /**
+     * counts the pixels of a glyph that are set.
+     * @param c the char
+     * @return the number of set pixels of the glyph
+     * */
+    public int countSetPixels(char c) {
+        int count = 0;
+        for (long word : getGlyph(c)) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * renders the glyphs of a range of chars in bulk.
+     * @param first the first char
+     * @param last  the last char, inclusive
+     * */
+    public void preload(char first, char last) {
+        for (int c = first; c <= last; c++) {
+            getGlyph((char) c);
+        }
+    }
+
+    /**
+     * loads the glyphs saved in a file.
+     * a file of another font or resolution is ignored.
+     * the whole file is read before any glyph is added, so a truncated or corrupt file adds nothing.
+     * @param file the file to load
+     * @return true if the glyphs were loaded
+     * @throws IOException if the file cannot be read or is truncated or corrupt
+     * */
+    public boolean load(Path file) throws IOException {
+        Map<Character, long[]> loaded = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(fontName)
+                    || in.readInt() != pixelResolution) {
+                return false;
+            }
+            int count = in.readInt();
+            if (count < 0 || count > MAX_GLYPHS) {
+                throw new IOException("Corrupt glyph cache: " + file);
+            }
+            for (int i = 0; i < count; i++) {
+                char c = in.readChar();
+                long[] glyph = new long[words];
+                for (int w = 0; w < words; w++) {
+                    glyph[w] = in.readLong();
+                }
+                loaded.put(c, glyph);
+            }
+        } catch (EOFException e) {
+            throw new IOException("Truncated glyph cache: " + file, e);
+        }
+        loaded.forEach(glyphs::putIfAbsent);
+        return true;
+    }
+
+    /**
+     * saves the cached glyphs to a file, replacing it.
+     * @param file the file to save to
+     * @throws IOException if the file cannot be written
+     * */
+    public void save(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Map<Character, long[]> snapshot = Map.copyOf(glyphs);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(fontName);
+            out.writeInt(pixelResolution);
+            out.writeInt(snapshot.size());
+            for (Map.Entry<Character, long[]> entry : snapshot.entrySet()) {
+                out.writeChar(entry.getKey());
+                for (long word : entry.getValue()) {
+                    out.writeLong(word);
+                }
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * renders a glyph through CharConverter and packs it into a bitset.
+     * @param c the char
+     * @return the glyph bitset
+     * */
+    private long[] render(char c) {
+        boolean[][] matrix = CharConverter.convertToBoolArray(c, fontName, pixelResolution);
+        long[] glyph = new long[words];
+        for (int y = 0; y < pixelResolution; y++) {
+            for (int x = 0; x < pixelResolution; x++) {
+                if (matrix[y][x]) {
+                    int bit = y * pixelResolution + x;
+                    glyph[bit / BITS_PER_WORD] |= 1L << (bit % BITS_PER_WORD);
+                }
+            }
+        }
+        return glyph;
+    }
+}
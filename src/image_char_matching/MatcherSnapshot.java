@@ -0,0 +1,246 @@
+package image_char_matching;
+
+import image.BrightnessGrid;
+import image_char_matching.RoundingStratgie.RoundingKeyStrategy;
+
+import java.util.Arrays;
+
+/**
+ * MatcherSnapshot class
+ * An immutable state of a SubImgCharMatcher: its chars, the sorted normalized brightness keys
+ * with the lowest char of each key, the rounding strategy and the lookup table compiled of them.
+ * A snapshot never changes, so any number of threads can match with it without locks
+ * while the matcher publishes newer snapshots.
+ */
+public final class MatcherSnapshot {
+    private static final int LOOKUP_BUCKETS = 4096;  // a power of two, so bucket edges are exact
+    private static final char AMBIGUOUS = '\uFFFF';  // bucket spanning more than one char
+
+    private final char[] chars;
+    private final double[] keys;
+    private final char[] values;
+    private final RoundingKeyStrategy rounder;
+    private final char[] lookupTable;
+    private final long version;
+    private volatile ShapeTable shapeTable = null;
+    private volatile char[] fixedTable = null;
+
+    /**
+     * MatcherSnapshot constructor.
+     * @param chars   the mapped chars in ascending order, used as is (not copied)
+     * @param keys    the normalized brightness keys in ascending order, used as is (not copied)
+     * @param values  the lowest char of every key, used as is (not copied)
+     * @param rounder the rounding strategy
+     * @param version the version of the snapshot
+     */
+    MatcherSnapshot(char[] chars, double[] keys, char[] values, RoundingKeyStrategy rounder, long version) {
+        this.chars = chars;
+        this.keys = keys;
+        this.values = values;
+        this.rounder = rounder;
+        this.version = version;
+        this.lookupTable = createLookupTable();
+    }
+
+    /**
+     * Returns the best matching character for a given brightness.
+     * If multiple characters have the same brightness, the one with the lowest ASCII value is returned.
+     * @param brightness the image brightness to match
+     * @return best matching character
+     */
+    public char getCharByImageBrightness(double brightness) {
+        char[] table = lookupTable;
+        if (table != null && brightness >= 0 && brightness <= 1) {
+            char c = table[(int) (brightness * LOOKUP_BUCKETS)];
+            if (c != AMBIGUOUS) {
+                return c;
+            }
+        }
+        return matchChar(brightness);
+    }
+
+    /**
+     * Returns the best matching character for a fixed-point brightness with one array lookup,
+     * the char of every one of the BrightnessGrid.FIXED_ONE + 1 brightness values is tabulated on first use.
+     * Gives the char getCharByImageBrightness gives for brightness / BrightnessGrid.FIXED_ONE.
+     * @param brightness the image brightness to match, between 0 and BrightnessGrid.FIXED_ONE
+     * @return best matching character
+     */
+    public char getCharByFixedBrightness(int brightness) {
+        char[] table = fixedTable;
+        if (table == null) {
+            table = createFixedTable(); // built on first use, a race only builds it twice
+            fixedTable = table;
+        }
+        return table[brightness];
+    }
+
+    /**
+     * Returns the character whose glyph differs from a tile shape in the fewest pixels,
+     * counted with popcounts of the XOR of the bitsets.
+     * The glyphs are ordered by their pixel counts and searched outwards from the pixel count
+     * of the shape: two bitsets differ in at least the difference of their counts, so the search
+     * stops once that difference exceeds the best distance found.
+     * If multiple characters are as close, the one with the lowest ASCII value is returned.
+     * @param bits   the shape bits, packed like the glyphs of GlyphCache
+     * @param offset the index of the first word of the shape in bits
+     * @return best matching character
+     */
+    public char getCharByShape(long[] bits, int offset) {
+        ShapeTable table = shapeTable;
+        if (table == null) {
+            table = createShapeTable(); // built on first use, a race only builds it twice
+            shapeTable = table;
+        }
+        char[] sorted = table.chars;
+        int[] counts = table.counts;
+        long[] glyphs = table.glyphs;
+        if (sorted.length == 0) {
+            return ' ';
+        }
+        int words = glyphs.length / sorted.length;
+        int count = 0;
+        for (int w = 0; w < words; w++) {
+            count += Long.bitCount(bits[offset + w]);
+        }
+        int above = Arrays.binarySearch(counts, count);
+        if (above < 0) {
+            above = -above - 1;
+        }
+        while (above > 0 && counts[above - 1] == count) {
+            above--;
+        }
+        int below = above - 1;
+        char best = '\uFFFF';
+        int bestDistance = Integer.MAX_VALUE;
+        while (below >= 0 || above < sorted.length) {
+            int i;
+            if (above >= sorted.length || (below >= 0 && count - counts[below] < counts[above] - count)) {
+                i = below--;
+            } else {
+                i = above++;
+            }
+            if (Math.abs(counts[i] - count) > bestDistance) {
+                break; // every glyph left differs in its count alone by more
+            }
+            int distance = 0;
+            for (int w = 0, glyph = i * words; w < words; w++) {
+                distance += Long.bitCount(bits[offset + w] ^ glyphs[glyph + w]);
+            }
+            if (distance < bestDistance || (distance == bestDistance && sorted[i] < best)) {
+                bestDistance = distance;
+                best = sorted[i];
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the version of the snapshot, every snapshot a matcher publishes has a new version.
+     * @return the version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the mapped characters.
+     * @return the mapped characters in ascending order
+     */
+    public char[] getChars() {
+        return chars.clone();
+    }
+
+    /**
+     * Matches a brightness to a character through the rounding strategy,
+     * without the lookup table.
+     * @param brightness the image brightness to match
+     * @return best matching character
+     */
+    private char matchChar(double brightness) {
+        if (keys.length == 0) {
+            return ' ';
+        }
+        return values[rounder.round(keys, brightness)]; // smallest ASCII value
+    }
+
+    /**
+     * Compiles the keys and rounding strategy into a table over quantized brightness.
+     * Bucket i holds the char of every brightness in [i, i + 1) / LOOKUP_BUCKETS,
+     * or AMBIGUOUS when the bucket spans a rounding boundary (those few buckets fall back
+     * to matchChar), so the table gives exactly the result of the rounding strategy.
+     * The last entry holds the char of brightness 1.
+     * @return the table, or null if the keys do not span [0, 1]
+     */
+    private char[] createLookupTable() {
+        if (keys.length == 0 || keys[0] != 0 || keys[keys.length - 1] != 1) {
+            return null; // degenerate charset, matchChar handles it
+        }
+        char[] table = new char[LOOKUP_BUCKETS + 1];
+        char low = matchChar(0);
+        for (int i = 0; i < LOOKUP_BUCKETS; i++) {
+            double next = (double) (i + 1) / LOOKUP_BUCKETS;
+            char high = matchChar(Math.nextDown(next));
+            table[i] = low == high ? low : AMBIGUOUS;
+            low = matchChar(next);
+        }
+        table[LOOKUP_BUCKETS] = low;
+        return table;
+    }
+
+    /**
+     * Tabulates the char of every fixed-point brightness, each exactly a double,
+     * through the lookup table and the rounding strategy.
+     * @return the chars indexed by fixed-point brightness
+     */
+    private char[] createFixedTable() {
+        char[] table = new char[BrightnessGrid.FIXED_ONE + 1];
+        for (int brightness = 0; brightness <= BrightnessGrid.FIXED_ONE; brightness++) {
+            table[brightness] = getCharByImageBrightness((double) brightness / BrightnessGrid.FIXED_ONE);
+        }
+        return table;
+    }
+
+    /**
+     * Packs the glyphs of the chars into one array ordered by their pixel counts,
+     * then by char, with the counts alongside for the search of getCharByShape.
+     * @return the glyphs of the chars
+     */
+    private ShapeTable createShapeTable() {
+        GlyphCache glyphCache = GlyphCache.getDefault();
+        int n = chars.length;
+        long[] order = new long[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = ((long) glyphCache.countSetPixels(chars[i]) << Character.SIZE) | chars[i];
+        }
+        Arrays.sort(order);
+        char[] sorted = new char[n];
+        int[] counts = new int[n];
+        long[] glyphs = new long[0];
+        for (int i = 0; i < n; i++) {
+            sorted[i] = (char) order[i];
+            counts[i] = (int) (order[i] >>> Character.SIZE);
+            long[] glyph = glyphCache.getGlyph(sorted[i]);
+            if (glyphs.length == 0) {
+                glyphs = new long[n * glyph.length];
+            }
+            System.arraycopy(glyph, 0, glyphs, i * glyph.length, glyph.length);
+        }
+        return new ShapeTable(sorted, counts, glyphs);
+    }
+
+    /**
+     * The glyphs of the chars, ordered by their pixel counts.
+     */
+    private static final class ShapeTable {
+        private final char[] chars;
+        private final int[] counts;
+        private final long[] glyphs;
+
+        private ShapeTable(char[] chars, int[] counts, long[] glyphs) {
+            this.chars = chars;
+            this.counts = counts;
+            this.glyphs = glyphs;
+        }
+    }
+}
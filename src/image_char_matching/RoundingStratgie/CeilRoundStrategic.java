@@ -1,33 +1,22 @@
 package image_char_matching.RoundingStratgie;
 
-import image_char_matching.SubImgCharMatcher;
-
 /**
- * rounds up to the closest key
+ * rounds down to the closest key, or up when no key is below
  * */
 public class CeilRoundStrategic implements RoundingKeyStrategy{
-    private static final double FAIL_NUM = -1;
-    private final SubImgCharMatcher subImgCharMatcher;
-
-    /**
-     * ctor
-     * @param subImgCharMatcher the subImgCharMatcher that will be used to find the closest key
-     * */
-    public CeilRoundStrategic(SubImgCharMatcher subImgCharMatcher) {
-        this.subImgCharMatcher = subImgCharMatcher;
-    }
 
     /**
-     * rounds up to the closest key
+     * rounds down to the closest key
+     * @param keys  the sorted keys
      * @param value the value to round
-     * @return the closest key
+     * @return the index of the closest key
      * */
     @Override
-    public double round(double value) {
-        double [] keys = subImgCharMatcher.getClosestKey(value);
-        if(keys[0]!=FAIL_NUM){
-            return keys[0];
+    public int round(double[] keys, double value) {
+        int floor = RoundingKeyStrategy.floorIndex(keys, value);
+        if (floor >= 0) {
+            return floor;
         }
-        return keys[1];
+        return RoundingKeyStrategy.ceilingIndex(keys, value);
     }
 }
@@ -1,34 +1,23 @@
 package image_char_matching.RoundingStratgie;
 
-import image_char_matching.SubImgCharMatcher;
-
 
 /**
- * Floor rounding strategy
+ * rounds up to the closest key, or down when no key is above
  * */
 public class FloorRoundStrategic implements RoundingKeyStrategy{
-    private static final double FAIL_NUM = -1;
-    private final SubImgCharMatcher subImgCharMatcher;
-
-    /**
-     * ctor
-     * @param subImgCharMatcher subImgCharMatcher
-     * */
-    public FloorRoundStrategic(SubImgCharMatcher subImgCharMatcher) {
-        this.subImgCharMatcher = subImgCharMatcher;
-    }
 
     /**
      * round value
+     * @param keys  the sorted keys
      * @param value value
-     * @return rounded value
+     * @return the index of the rounded key
      * */
     @Override
-    public double round(double value) {
-        double [] keys = subImgCharMatcher.getClosestKey(value);
-        if(keys[1]!=FAIL_NUM){
-            return keys[1];
+    public int round(double[] keys, double value) {
+        int ceiling = RoundingKeyStrategy.ceilingIndex(keys, value);
+        if (ceiling < keys.length) {
+            return ceiling;
         }
-        return keys[0];
+        return RoundingKeyStrategy.floorIndex(keys, value);
     }
 }
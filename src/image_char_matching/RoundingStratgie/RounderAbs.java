@@ -1,32 +1,23 @@
 package image_char_matching.RoundingStratgie;
 
 
-import image_char_matching.SubImgCharMatcher;
 /**
- * Rounds the value to the closest key in the subImgCharMatcher
+ * Rounds the value to the closest key, the lower key on a tie
  * */
 public class RounderAbs implements RoundingKeyStrategy{
-    private static final double FAILING = -1;
-    private final SubImgCharMatcher subImgCharMatcher;
-
-    /**
-     * Rounds the value to the closest key in the subImgCharMatcher
-     * @param subImgCharMatcher the subImgCharMatcher to use
-     * */
-    public RounderAbs(SubImgCharMatcher subImgCharMatcher) {
-        this.subImgCharMatcher = subImgCharMatcher;
-    }
 
     /***
-     * rounds the value to the closest key in the subImgCharMatcher
+     * rounds the value to the closest key
+     * @param keys  the sorted keys
      * @param value the value to round
-     * @return the rounded value
+     * @return the index of the rounded key
      */
     @Override
-    public double round(double value) {
-        double [] keys = subImgCharMatcher.getClosestKey(value);
-        if (keys[0] == FAILING) return keys[1];
-        if (keys[1] == FAILING) return keys[0];
-        return (value - keys[0]) <= ( keys[1] - value) ? keys[0] : keys[1];
+    public int round(double[] keys, double value) {
+        int floor = RoundingKeyStrategy.floorIndex(keys, value);
+        int ceiling = RoundingKeyStrategy.ceilingIndex(keys, value);
+        if (floor < 0) return ceiling;
+        if (ceiling == keys.length) return floor;
+        return (value - keys[floor]) <= (keys[ceiling] - value) ? floor : ceiling;
     }
 }
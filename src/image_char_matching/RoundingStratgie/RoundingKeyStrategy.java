@@ -1,11 +1,40 @@
 package image_char_matching.RoundingStratgie;
+
+import java.util.Arrays;
+
 /**
  * Rounding Strategy Interface
+ * A strategy only looks at the keys it is given, so one strategy can round
+ * against any number of key arrays from any number of threads.
  * */
 public interface RoundingKeyStrategy {
     /**
      * rounding method
-     * @param value  value to be rounded
+     * @param keys  the sorted keys to round to, not empty
+     * @param value value to be rounded
+     * @return the index of the key the value is rounded to
      * */
-    double round(double value);
+    int round(double[] keys, double value);
+
+    /**
+     * finds the largest key that is not above the value.
+     * @param keys  the sorted keys
+     * @param value the value
+     * @return the index of the key, -1 if every key is above the value
+     * */
+    static int floorIndex(double[] keys, double value) {
+        int index = Arrays.binarySearch(keys, value);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * finds the smallest key that is not below the value.
+     * @param keys  the sorted keys
+     * @param value the value
+     * @return the index of the key, keys.length if every key is below the value
+     * */
+    static int ceilingIndex(double[] keys, double value) {
+        int index = Arrays.binarySearch(keys, value);
+        return index >= 0 ? index : -index - 1;
+    }
 }
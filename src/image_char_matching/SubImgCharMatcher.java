@@ -5,11 +5,13 @@ import image_char_matching.RoundingStratgie.RoundingKeyStrategy;
 
 import java.util.*;
 
-import static image_char_matching.CharConverter.convertToBoolArray;
-
 /**
  * SubImgCharMatcher class
- * Responsible for matching a character to a brightness level based on its pixel density.
+ * Responsible for matching a character to a brightness level based on its pixel density,
+ * or to a tile shape based on the pixels of its glyph.
+ * Every change of the charset or rounding publishes a new immutable MatcherSnapshot
+ * (copy-on-write), so conversions on any number of threads match through a consistent
+ * snapshot without locks while the matcher is changed.
  */
 public class SubImgCharMatcher {
 
@@ -17,70 +19,92 @@ public class SubImgCharMatcher {
     private static final String DEFAULT = "abs";     // Default rounding strategy
 
     private final TreeSet<Character> mappedChars = new TreeSet<>();
-    private final Map<Double, TreeSet<Character>> brightnessToCharMap = new HashMap<>();
-    private final TreeMap<Double, TreeSet<Character>> brightnessToTreeMap = new TreeMap<>();
     private final TreeMap<Double, TreeSet<Character>> charTreeMap = new TreeMap<>();
+    private final RounderFactory rounderFactory = new RounderFactory();
 
     private RoundingKeyStrategy roundingKeyStrategy;
-    private final RounderFactory rounderFactory;
-
-    private double maxBright;
-    private double minBright;
+    private long version = 0;
+    private volatile MatcherSnapshot snapshot;
 
     /**
      * Constructor that initializes the matcher with a given character set.
      * @param charset array of characters to be considered for brightness mapping
      */
     public SubImgCharMatcher(char[] charset) {
-        rounderFactory = new RounderFactory(this);
         this.roundingKeyStrategy = rounderFactory.createRounder(DEFAULT);
         for (char c : charset) {
             mappedChars.add(c);
             double brightness = calculateBrightness(c);
             addToInitialMap(brightness, c);
         }
-        createBrightnessToCharMap();
+        publish();
+    }
+
+    /**
+     * Returns the current snapshot, matching through one snapshot gives consistent results
+     * however the matcher changes meanwhile.
+     * @return the current snapshot
+     */
+    public MatcherSnapshot getSnapshot() {
+        return snapshot;
     }
 
     /**
-     * Returns the best matching character for a given brightness.
+     * Returns the best matching character for a given brightness in the current snapshot.
      * If multiple characters have the same brightness, the one with the lowest ASCII value is returned.
      * @param brightness the image brightness to match
      * @return best matching character
      */
     public char getCharByImageBrightness(double brightness) {
-        double rounded = roundingKeyStrategy.round(brightness);
-        TreeSet<Character> chars = brightnessToCharMap.get(rounded);
-        if (chars != null && !chars.isEmpty()) {
-            return chars.first(); // smallest ASCII value
-        }
-        return ' ';
+        return snapshot.getCharByImageBrightness(brightness);
+    }
+
+    /**
+     * Returns the best matching character for a fixed-point brightness in the current snapshot,
+     * see MatcherSnapshot.getCharByFixedBrightness.
+     * @param brightness the image brightness to match, between 0 and BrightnessGrid.FIXED_ONE
+     * @return best matching character
+     */
+    public char getCharByFixedBrightness(int brightness) {
+        return snapshot.getCharByFixedBrightness(brightness);
+    }
+
+    /**
+     * Returns the character of the current snapshot whose glyph is closest to a tile shape,
+     * see MatcherSnapshot.getCharByShape.
+     * @param bits   the shape bits, packed like the glyphs of GlyphCache
+     * @param offset the index of the first word of the shape in bits
+     * @return best matching character
+     */
+    public char getCharByShape(long[] bits, int offset) {
+        return snapshot.getCharByShape(bits, offset);
+    }
+
+    /**
+     * Returns the side of the glyphs in pixels, the number of cells along the side
+     * of the tile shapes getCharByShape expects.
+     * @return the side of the glyphs
+     */
+    public int getShapeCells() {
+        return GlyphCache.getDefault().getPixelResolution();
     }
 
     /**
      * Adds a character to the brightness mapping.
      * @param c the character to be added
      */
-    public void addChar(char c) {
+    public synchronized void addChar(char c) {
         if (mappedChars.contains(c)) return;
         mappedChars.add(c);
-        double brightness = calculateBrightness(c);
-        addToInitialMap(brightness, c);
-        if (brightness >= minBright && brightness <= maxBright) {
-            double normalized = (brightness - minBright) / (maxBright - minBright);
-            addToBrightnessToChar(normalized, c);
-        } else {
-            createBrightnessToCharMap();
-        }
+        addToInitialMap(calculateBrightness(c), c);
+        publish();
     }
 
-
-
     /**
      * Removes a character from the mapping.
      * @param c the character to remove
      */
-    public void removeChar(char c) {
+    public synchronized void removeChar(char c) {
         if (!mappedChars.contains(c)) return;
 
         mappedChars.remove(c);
@@ -93,38 +117,29 @@ public class SubImgCharMatcher {
                 charTreeMap.remove(brightness); // Remove empty set to prevent ghost values
             }
         }
-        if (brightness>=minBright && brightness<=maxBright) {
-            createBrightnessToCharMap(); // Rebuild map with updated brightness values
-        }else {
-            double nBrightness = (brightness-minBright)/(maxBright-minBright);
-            brightnessToCharMap.get(nBrightness).remove(c);
-            brightnessToTreeMap.get(nBrightness).remove(c);
-            if (brightnessToCharMap.get(nBrightness).isEmpty()) {
-                brightnessToCharMap.remove(nBrightness);
-                brightnessToTreeMap.remove(nBrightness);
-            }
-        }
-
+        publish();
     }
 
-
     /**
-     * Sets the rounding strategy (abs, floor, ceil).
+     * Sets the rounding strategy (abs, upper, lower), an unknown name keeps the current one.
      * @param rounderName name of rounding strategy
      */
-    public void setRounder(String rounderName) {
-        this.roundingKeyStrategy = rounderFactory.createRounder(rounderName);
+    public synchronized void setRounder(String rounderName) {
+        RoundingKeyStrategy rounder = rounderFactory.createRounder(rounderName);
+        if (rounder != null) {
+            this.roundingKeyStrategy = rounder;
+        }
+        publish();
     }
 
     /**
-     * Returns the closest lower and upper brightness keys for a given value.
-     * @param value brightness value
-     * @return array of [lowerKey, upperKey]
+     * Returns the version of the current snapshot, it changes whenever a character is added
+     * or removed or the rounding strategy is set, so a brightness maps to the same character
+     * as long as the version stays the same.
+     * @return the mapping version
      */
-    public double[] getClosestKey(double value) {
-        double floor = brightnessToTreeMap.floorKey(value);
-        double ceiling = brightnessToTreeMap.ceilingKey(value);
-        return new double[]{floor, ceiling};
+    public long getVersion() {
+        return snapshot.getVersion();
     }
 
     /**
@@ -132,43 +147,38 @@ public class SubImgCharMatcher {
      * @return mapped character set
      */
     public TreeSet<Character> getMappedChars() {
-        return new TreeSet<>(mappedChars);
+        TreeSet<Character> chars = new TreeSet<>();
+        for (char c : snapshot.getChars()) {
+            chars.add(c);
+        }
+        return chars;
     }
 
     /**
-     * Rebuilds the brightness-to-character map using normalized brightness values.
-     * Normalized brightness = (brightness - minBright) / (maxBright - minBright)
+     * Builds a snapshot of the charset and rounding strategy and publishes it.
+     * The keys are the normalized brightness values of the charset,
+     * normalized brightness = (brightness - minBright) / (maxBright - minBright),
+     * each with the lowest char of its brightness.
+     * When every char has the same brightness, the only key is 0.
      */
-    private void createBrightnessToCharMap() {
-        brightnessToCharMap.clear();
-        brightnessToTreeMap.clear();
-        if (charTreeMap.isEmpty()) return;
-        minBright = charTreeMap.firstKey();
-        maxBright = charTreeMap.lastKey();
-        for (Map.Entry<Double, TreeSet<Character>> entry : charTreeMap.entrySet()) {
-            double normalized = (entry.getKey() - minBright) / (maxBright - minBright);
-            for (char c : entry.getValue()) {
-                addToBrightnessToChar(normalized, c);
-            }
+    private void publish() {
+        char[] chars = new char[mappedChars.size()];
+        int i = 0;
+        for (char c : mappedChars) {
+            chars[i++] = c;
         }
-    }
-
-
-    /**
-     * adds a character to the brightness-to-character map
-     * @param normalized the normalized brightness value
-     * @param value the character to add
-     * */
-    private void addToBrightnessToChar(double normalized, char value) {
-        if (brightnessToCharMap.containsKey(normalized)) {
-            brightnessToCharMap.get(normalized).add(value);
-            brightnessToTreeMap.get(normalized).add(value);
-        }else {
-            TreeSet<Character> chars = new TreeSet<>();
-            chars.add(value);
-            brightnessToTreeMap.put(normalized, chars);
-            brightnessToCharMap.put(normalized, chars);
+        double[] keys = new double[charTreeMap.size()];
+        char[] values = new char[keys.length];
+        if (!charTreeMap.isEmpty()) {
+            double minBright = charTreeMap.firstKey();
+            double maxBright = charTreeMap.lastKey();
+            int k = 0;
+            for (Map.Entry<Double, TreeSet<Character>> entry : charTreeMap.entrySet()) {
+                keys[k] = maxBright == minBright ? 0 : (entry.getKey() - minBright) / (maxBright - minBright);
+                values[k++] = entry.getValue().first(); // smallest ASCII value
+            }
         }
+        snapshot = new MatcherSnapshot(chars, keys, values, roundingKeyStrategy, ++version);
     }
 
     /**
@@ -189,17 +199,11 @@ public class SubImgCharMatcher {
     /**
      * Calculates the brightness of a character by counting how many
      * pixels are 'on' in its 16x16 boolean matrix.
+     * The glyph comes from the shared GlyphCache, so each char is rendered once.
      * @param c the character
      * @return brightness value between 0.0 and 1.0
      */
     private double calculateBrightness(char c) {
-        boolean[][] charArray = convertToBoolArray(c);
-        double brightness = 0;
-        for (boolean[] row : charArray) {
-            for (boolean pixel : row) {
-                if (pixel) brightness++;
-            }
-        }
-        return brightness / CHAR_ARR_SIZE;
+        return GlyphCache.getDefault().countSetPixels(c) / CHAR_ARR_SIZE;
     }
 }
@@ -0,0 +1,117 @@
+package ascii_art;
+
+import image.Image;
+import image.ImageProcessor;
+import image.LuminanceTable;
+import image.ShapeGrid;
+import image_char_matching.SubImgCharMatcher;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Checks that converting on a pool of threads gives the same ascii art as converting serially,
+ * on images whose rows do not split evenly into bands.
+ */
+public class AsciiArtAlgorithmTest {
+    private static final char[] CHARS = "@#%*+=-:. ".toCharArray();
+    private static final int[] THREADS = {2, 3, 5, 7};
+    private static final int[] RESOLUTIONS = {2, 16, 64, 128};
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 200;
+    private static final int AREA_COLS = 53;
+    private static final int AREA_ROWS = 37;
+    private static final int SEED = 3;
+
+    @Test
+    public void brightnessIsTheSameOnAnyNumberOfThreads() {
+        Image image = randomImage();
+        for (int resolution : RESOLUTIONS) {
+            char[][] serial = algorithm(image, resolution, 1).run();
+            for (int threads : THREADS) {
+                assertArrayEquals(serial, algorithm(image, resolution, threads).run());
+            }
+        }
+    }
+
+    @Test
+    public void shapesAndColorsAreTheSameOnAnyNumberOfThreads() {
+        Image image = randomImage();
+        for (int resolution : RESOLUTIONS) {
+            AsciiArtAlgorithm serial = algorithm(image, resolution, 1);
+            serial.setMatching("shape");
+            for (int threads : THREADS) {
+                AsciiArtAlgorithm parallel = algorithm(image, resolution, threads);
+                parallel.setMatching("shape");
+                assertArrayEquals(serial.run(), parallel.run());
+                assertArrayEquals(serial.runColors(), parallel.runColors());
+            }
+        }
+    }
+
+    @Test
+    public void areaTilingIsTheSameOnAnyNumberOfThreads() {
+        Image image = randomImage();
+        AsciiArtAlgorithm serial = algorithm(image, RESOLUTIONS[0], 1);
+        serial.setSize(AREA_COLS, AREA_ROWS);
+        for (int threads : THREADS) {
+            AsciiArtAlgorithm parallel = algorithm(image, RESOLUTIONS[0], threads);
+            parallel.setSize(AREA_COLS, AREA_ROWS);
+            assertArrayEquals(serial.run(), parallel.run());
+            assertArrayEquals(serial.runColors(), parallel.runColors());
+        }
+    }
+
+    @Test
+    public void coarserResolutionsFromThePyramidAreTiledDirectly() {
+        Image image = randomImage();
+        AsciiArtAlgorithm pyramid = algorithm(image, RESOLUTIONS[RESOLUTIONS.length - 1], 1);
+        pyramid.run();
+        while (pyramid.changeResolution(0.5f)) {
+            assertArrayEquals(algorithm(image, pyramid.getResolution(), 1).run(), pyramid.run());
+        }
+    }
+
+    @Test
+    public void shapesAreMatchedTileByTile() {
+        Image image = randomImage();
+        SubImgCharMatcher matcher = new SubImgCharMatcher(CHARS);
+        LuminanceTable table = ImageProcessor.buildLuminanceTable(ImageProcessor.padImageWithWhite(image));
+        AsciiArtAlgorithm shapes = new AsciiArtAlgorithm(image, matcher, RESOLUTIONS[0]);
+        shapes.setMatching("shape");
+        for (int resolution : RESOLUTIONS) {
+            ShapeGrid grid = ImageProcessor.calculateShapeGrid(table, resolution, matcher.getShapeCells());
+            char[][] expected = new char[grid.getRows()][grid.getCols()];
+            for (int row = 0; row < grid.getRows(); row++) {
+                for (int col = 0; col < grid.getCols(); col++) {
+                    expected[row][col] = matcher.getSnapshot().getCharByShape(grid.getBits(), grid.offsetOf(row, col));
+                }
+            }
+            while (shapes.getResolution() < resolution) {
+                shapes.changeResolution(2);
+            }
+            assertArrayEquals(expected, shapes.run());
+            shapes.changeResolution(0.5f);
+            shapes.run();
+            shapes.changeResolution(2);
+            assertArrayEquals(expected, shapes.run());
+        }
+    }
+
+    private static AsciiArtAlgorithm algorithm(Image image, int resolution, int threads) {
+        AsciiArtAlgorithm algorithm = new AsciiArtAlgorithm(image, new SubImgCharMatcher(CHARS), resolution);
+        algorithm.setParallelism(threads);
+        return algorithm;
+    }
+
+    private static Image randomImage() {
+        Random random = new Random(SEED);
+        int[] pixels = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xFF000000 | random.nextInt(1 << 24);
+        }
+        return new Image(pixels, WIDTH, HEIGHT);
+    }
+}
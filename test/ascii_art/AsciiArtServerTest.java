@@ -0,0 +1,106 @@
+package ascii_art;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the server rejects an image by the size in its header before decoding it.
+ */
+public class AsciiArtServerTest {
+    private static final int MAX_CONCURRENT = 2;
+    private static final int MAX_BYTES = 1 << 20;
+    private static final int HUGE_SIDE = 100_000;
+    private static final int SMALL_SIDE = 64;
+    private static final int OK = 200;
+    private static final int TOO_LARGE = 413;
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int GRAYSCALE = 0;
+
+    private AsciiArtServer server;
+    private int port;
+
+    @Before
+    public void start() throws IOException {
+        server = new AsciiArtServer(MAX_CONCURRENT, MAX_BYTES);
+        port = server.start(0);
+    }
+
+    @After
+    public void stop() {
+        server.stop();
+    }
+
+    @Test
+    public void hugeDimensionsAreRejectedBeforeDecoding() throws IOException {
+        byte[] png = pngHeader(HUGE_SIDE, HUGE_SIDE);
+        assertTrue(png.length < MAX_BYTES);
+        assertEquals(TOO_LARGE, post(png));
+    }
+
+    @Test
+    public void smallImagesAreConverted() throws IOException {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(SMALL_SIDE, SMALL_SIDE, BufferedImage.TYPE_INT_RGB), "png", png);
+        assertEquals(OK, post(png.toByteArray()));
+    }
+
+    private int post(byte[] body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/convert?res=8")
+                .openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body);
+        }
+        int status = connection.getResponseCode();
+        connection.disconnect();
+        return status;
+    }
+
+    /**
+     * a PNG file of only a header and an end chunk, claiming the given size.
+     */
+    private static byte[] pngHeader(int width, int height) throws IOException {
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        file.write(PNG_SIGNATURE);
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream fields = new DataOutputStream(header);
+        fields.writeInt(width);
+        fields.writeInt(height);
+        fields.writeByte(1); // bit depth
+        fields.writeByte(GRAYSCALE);
+        fields.writeByte(0); // compression
+        fields.writeByte(0); // filter
+        fields.writeByte(0); // interlace
+        writeChunk(file, "IHDR", header.toByteArray());
+        writeChunk(file, "IEND", new byte[0]);
+        return file.toByteArray();
+    }
+
+    private static void writeChunk(ByteArrayOutputStream file, String type, byte[] data) throws IOException {
+        DataOutputStream out = new DataOutputStream(file);
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+        out.writeInt(data.length);
+        out.write(typeBytes);
+        out.write(data);
+        out.writeInt((int) crc.getValue());
+    }
+}
@@ -0,0 +1,30 @@
+package ascii_art;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks the char sets shared by the shell and the batch converter.
+ */
+public class CharSetParserTest {
+    private static final int PRINTABLE_CHARS = 95;
+
+    @Test
+    public void formatsAreParsed() {
+        assertArrayEquals("x".toCharArray(), CharSetParser.parse("x"));
+        assertArrayEquals(" ".toCharArray(), CharSetParser.parse("space"));
+        assertEquals(PRINTABLE_CHARS, CharSetParser.parse("all").length);
+        assertArrayEquals("abcd".toCharArray(), CharSetParser.parse("a-d"));
+        assertArrayEquals("abcd".toCharArray(), CharSetParser.parse("d-a"));
+        assertNull(CharSetParser.parse("@#."));
+    }
+
+    @Test
+    public void otherValuesAreTheCharsThemselves() {
+        assertArrayEquals("@#.".toCharArray(), CharSetParser.parseOrChars("@#."));
+        assertArrayEquals("0123456789".toCharArray(), CharSetParser.parseOrChars("0-9"));
+    }
+}
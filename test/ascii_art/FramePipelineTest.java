@@ -0,0 +1,91 @@
+package ascii_art;
+
+import ascii_output.AsciiOutput;
+import image.Image;
+import image_char_matching.SubImgCharMatcher;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that the pipeline converts every frame of a sequence in order,
+ * and that a failure of any kind in a stage ends the run with an IOException instead of a hang.
+ */
+public class FramePipelineTest {
+    private static final char[] CHARS = "@#%*+=-:. ".toCharArray();
+    private static final int FRAMES = 5;
+    private static final int SIDE = 32;
+    private static final int RESOLUTION = 8;
+    private static final int TIMEOUT_MS = 10000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test(timeout = TIMEOUT_MS)
+    public void convertsEveryFrameInOrder() throws IOException {
+        String pattern = writeSequence();
+        SubImgCharMatcher matcher = new SubImgCharMatcher(CHARS);
+        List<char[][]> frames = new ArrayList<>();
+        new FramePipeline(matcher, RESOLUTION, 1).run(pattern, frames::add);
+        assertEquals(FRAMES, frames.size());
+        for (int i = 0; i < FRAMES; i++) {
+            Image image = new Image(String.format(pattern, i));
+            assertArrayEquals(new AsciiArtAlgorithm(image, matcher, RESOLUTION).run(), frames.get(i));
+        }
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void errorsOfAStageFailTheRun() throws IOException {
+        String pattern = writeSequence();
+        Error error = new Error("render failed");
+        AsciiOutput failing = chars -> {
+            throw error;
+        };
+        try {
+            new FramePipeline(new SubImgCharMatcher(CHARS), RESOLUTION, 1).run(pattern, failing);
+            fail("the failure of the render stage was not reported");
+        } catch (IOException e) {
+            assertSame(error, e.getCause());
+        }
+    }
+
+    @Test(timeout = TIMEOUT_MS)
+    public void missingSourceFailsTheRun() {
+        try {
+            new FramePipeline(new SubImgCharMatcher(CHARS), RESOLUTION, 1)
+                    .run(new File(folder.getRoot(), "missing.gif").getPath(), chars -> { });
+            fail("the failure of the decode stage was not reported");
+        } catch (IOException e) {
+            assertEquals(IOException.class, e.getClass());
+        }
+    }
+
+    /**
+     * writes frames going from black to white.
+     */
+    private String writeSequence() throws IOException {
+        for (int i = 0; i < FRAMES; i++) {
+            BufferedImage image = new BufferedImage(SIDE, SIDE, BufferedImage.TYPE_INT_RGB);
+            int gray = i * 255 / (FRAMES - 1);
+            for (int y = 0; y < SIDE; y++) {
+                for (int x = 0; x < SIDE; x++) {
+                    image.setRGB(x, y, gray << 16 | gray << 8 | gray);
+                }
+            }
+            ImageIO.write(image, "png", new File(folder.getRoot(), String.format("frame%02d.png", i)));
+        }
+        return new File(folder.getRoot(), "frame%02d.png").getPath();
+    }
+}
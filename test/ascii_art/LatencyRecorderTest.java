@@ -0,0 +1,73 @@
+package ascii_art;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the histogram percentiles against the exact nearest-rank percentiles of the recorded latencies.
+ */
+public class LatencyRecorderTest {
+    private static final double[] PERCENTILES = {0, 1, 50, 90, 99, 99.9, 100};
+    private static final double RELATIVE_ERROR = 1.0 / 32;
+    private static final int SAMPLES = 100000;
+    private static final int THREADS = 8;
+    private static final int SEED = 18;
+
+    @Test
+    public void percentilesAreWithinTheBucketWidth() {
+        Random random = new Random(SEED);
+        LatencyRecorder recorder = new LatencyRecorder();
+        long[] latencies = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            latencies[i] = (long) Math.exp(random.nextDouble() * Math.log(Long.MAX_VALUE / 2.0));
+            recorder.record(latencies[i]);
+        }
+        Arrays.sort(latencies);
+        assertEquals(SAMPLES, recorder.getCount());
+        for (double percentile : PERCENTILES) {
+            int rank = (int) Math.ceil(percentile / 100 * SAMPLES);
+            long exact = latencies[Math.max(0, rank - 1)];
+            long reported = recorder.percentile(percentile);
+            assertTrue(percentile + ": " + reported + " < " + exact, reported >= exact);
+            assertTrue(percentile + ": " + reported + " > " + exact, reported - exact <= exact * RELATIVE_ERROR);
+        }
+        assertEquals(latencies[SAMPLES - 1], recorder.percentile(100));
+    }
+
+    @Test
+    public void smallLatenciesAreExact() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        assertEquals(0, recorder.percentile(50));
+        for (int latency = 1; latency <= 10; latency++) {
+            recorder.record(latency);
+        }
+        assertEquals(5, recorder.percentile(50));
+        assertEquals(9, recorder.percentile(90));
+        assertEquals(10, recorder.percentile(100));
+    }
+
+    @Test
+    public void concurrentRecordsAreAllCounted() throws InterruptedException {
+        LatencyRecorder recorder = new LatencyRecorder();
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 1; i <= SAMPLES; i++) {
+                    recorder.record(i);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            recorder.summary(); // reading while recording never blocks nor fails
+            thread.join();
+        }
+        assertEquals(THREADS * SAMPLES, recorder.getCount());
+        assertEquals(SAMPLES, recorder.percentile(100));
+    }
+}
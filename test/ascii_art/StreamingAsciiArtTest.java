@@ -0,0 +1,165 @@
+package ascii_art;
+
+import image.BandBrightnessReader;
+import image.BrightnessGrid;
+import image.Image;
+import image.ImageProcessor;
+import image.LuminanceTable;
+import image_char_matching.SubImgCharMatcher;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that streaming an image file band by band gives the same brightness and ascii art
+ * as converting the decoded image in memory.
+ */
+public class StreamingAsciiArtTest {
+    private static final char[] CHARS = "@#%*+=-:. ".toCharArray();
+    private static final int[][] SIZES = {{300, 200}, {37, 129}, {64, 64}};
+    private static final long[] BAND_PIXELS = {1, 1000, BandBrightnessReader.DEFAULT_BAND_PIXELS};
+    private static final int SEED = 7;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void gridIsTheInMemoryGrid() throws IOException {
+        Random random = new Random(SEED);
+        for (int[] size : SIZES) {
+            File file = writeImage(random, size[0], size[1]);
+            LuminanceTable table = ImageProcessor.buildLuminanceTable(
+                    ImageProcessor.padImageWithWhite(new Image(file.getPath())));
+            for (int resolution = 1; resolution <= Math.min(size[0], size[1]); resolution *= 2) {
+                BrightnessGrid expected = ImageProcessor.calculateBrightnessGrid(table, resolution);
+                for (long bandPixels : BAND_PIXELS) {
+                    try (BandBrightnessReader reader = new BandBrightnessReader(file.getPath(), bandPixels)) {
+                        BrightnessGrid grid = reader.readGrid(resolution);
+                        assertEquals(expected.getRows(), grid.getRows());
+                        assertEquals(expected.getCols(), grid.getCols());
+                        for (int row = 0; row < grid.getRows(); row++) {
+                            for (int col = 0; col < grid.getCols(); col++) {
+                                assertEquals(expected.get(row, col), grid.get(row, col), 0);
+                                assertEquals(expected.getFixed(row, col), grid.getFixed(row, col));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void asciiArtIsTheInMemoryAsciiArt() throws IOException {
+        Random random = new Random(SEED);
+        SubImgCharMatcher matcher = new SubImgCharMatcher(CHARS);
+        for (int[] size : SIZES) {
+            File file = writeImage(random, size[0], size[1]);
+            Image image = new Image(file.getPath());
+            for (int resolution = 1; resolution <= Math.min(size[0], size[1]); resolution *= 2) {
+                char[][] expected = new AsciiArtAlgorithm(image, matcher, resolution).run();
+                for (long bandPixels : BAND_PIXELS) {
+                    assertArrayEquals(expected,
+                            new StreamingAsciiArt(matcher, bandPixels).convert(file.getPath(), resolution));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void largeImagesAreStreamedByTheAlgorithm() throws IOException {
+        Random random = new Random(SEED);
+        String previous = System.getProperty("stream.pixels");
+        System.setProperty("stream.pixels", "0");
+        try {
+            for (int[] size : SIZES) {
+                File file = writeImage(random, size[0], size[1]);
+                SubImgCharMatcher matcher = new SubImgCharMatcher(CHARS);
+                Image image = new Image(file.getPath());
+                AsciiArtAlgorithm streamed = new AsciiArtAlgorithm(file.getPath(), CHARS, 1);
+                for (int resolution = 1; resolution <= Math.min(size[0], size[1]); resolution *= 2) {
+                    assertArrayEquals(new AsciiArtAlgorithm(image, matcher, resolution).run(), streamed.run());
+                    streamed.changeResolution(2);
+                }
+            }
+        } finally {
+            if (previous == null) {
+                System.clearProperty("stream.pixels");
+            } else {
+                System.setProperty("stream.pixels", previous);
+            }
+        }
+    }
+
+    @Test
+    public void streamedGridsAreKeptInThePyramid() throws IOException {
+        Random random = new Random(SEED);
+        String previous = System.getProperty("stream.pixels");
+        System.setProperty("stream.pixels", "0");
+        try {
+            File file = writeImage(random, SIZES[0][0], SIZES[0][1]);
+            SubImgCharMatcher matcher = new SubImgCharMatcher(CHARS);
+            Image image = new Image(file.getPath());
+            AsciiArtAlgorithm streamed = new AsciiArtAlgorithm(file.getPath(), CHARS, 2);
+            streamed.changeResolution(2);
+            streamed.run();
+            assertTrue(file.delete());
+            streamed.changeResolution(0.5f);
+            assertArrayEquals(new AsciiArtAlgorithm(image, matcher, 2).run(), streamed.run());
+            streamed.changeResolution(0.5f);
+            assertArrayEquals(new AsciiArtAlgorithm(image, matcher, 1).run(), streamed.run());
+        } finally {
+            if (previous == null) {
+                System.clearProperty("stream.pixels");
+            } else {
+                System.setProperty("stream.pixels", previous);
+            }
+        }
+    }
+
+    @Test
+    public void streamedImagesRefuseTheModesThatDecodeThem() throws IOException {
+        Random random = new Random(SEED);
+        String previous = System.getProperty("stream.pixels");
+        System.setProperty("stream.pixels", "0");
+        try {
+            File file = writeImage(random, SIZES[0][0], SIZES[0][1]);
+            AsciiArtAlgorithm streamed = new AsciiArtAlgorithm(file.getPath(), CHARS, 2);
+            assertTrue(streamed.isStreaming());
+            assertFalse(streamed.setMatching("shape"));
+            assertFalse(streamed.setColor(true));
+            assertFalse(streamed.setSize(2, 2));
+            assertTrue(streamed.setMatching("brightness"));
+            assertTrue(streamed.setColor(false));
+        } finally {
+            if (previous == null) {
+                System.clearProperty("stream.pixels");
+            } else {
+                System.setProperty("stream.pixels", previous);
+            }
+        }
+    }
+
+    private File writeImage(Random random, int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt(1 << 24));
+            }
+        }
+        File file = folder.newFile(width + "x" + height + ".png");
+        ImageIO.write(image, "png", file);
+        return file;
+    }
+}
@@ -0,0 +1,27 @@
+package ascii_output;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Checks that Utf8 encodes every char outside the surrogates like the JDK encoder.
+ */
+public class Utf8Test {
+
+    @Test
+    public void encodingIsTheJdkEncoding() {
+        byte[] bytes = new byte[Utf8.MAX_BYTES_PER_CHAR];
+        for (char c = 0; c < Character.MIN_SURROGATE; c++) {
+            int length = Utf8.encode(c, bytes, 0);
+            assertArrayEquals(String.valueOf(c).getBytes(StandardCharsets.UTF_8), Arrays.copyOf(bytes, length));
+        }
+        for (int c = Character.MAX_SURROGATE + 1; c <= Character.MAX_VALUE; c++) {
+            int length = Utf8.encode((char) c, bytes, 0);
+            assertArrayEquals(String.valueOf((char) c).getBytes(StandardCharsets.UTF_8), Arrays.copyOf(bytes, length));
+        }
+    }
+}
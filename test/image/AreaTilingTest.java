@@ -0,0 +1,57 @@
+package image;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the area-weighted tiling against the integral of the luminance over every tile,
+ * summed pixel by pixel with the area each pixel has in the tile.
+ */
+public class AreaTilingTest {
+    private static final double TOLERANCE = 1e-13;
+    private static final int[][] SIZES = {{97, 61}, {1, 1}, {13, 5}, {64, 64}};
+    private static final int[][] TILINGS = {{1, 1}, {7, 13}, {5, 3}, {61, 97}, {2, 9}};
+    private static final int SEED = 23;
+
+    @Test
+    public void brightnessIsTheAreaIntegral() {
+        Random random = new Random(SEED);
+        for (int[] size : SIZES) {
+            Image image = LuminanceTableTest.randomImage(random, size[0], size[1]);
+            LuminanceTable table = ImageProcessor.buildLuminanceTable(ImageProcessor.padImageWithWhite(image));
+            for (int[] tiling : TILINGS) {
+                int rows = Math.min(tiling[0], size[1]);
+                int cols = Math.min(tiling[1], size[0]);
+                BrightnessGrid grid = ImageProcessor.calculateAreaBrightnessGrid(table, rows, cols);
+                for (int row = 0; row < rows; row++) {
+                    for (int col = 0; col < cols; col++) {
+                        assertEquals(size[0] + "x" + size[1] + " tile " + row + "," + col,
+                                areaIntegral(image, rows, cols, row, col), grid.get(row, col), TOLERANCE);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * the average luminance over a tile, every pixel weighted by the area it has in the tile.
+     */
+    private static double areaIntegral(Image image, int rows, int cols, int row, int col) {
+        double top = (double) row * image.getHeight() / rows;
+        double bottom = (double) (row + 1) * image.getHeight() / rows;
+        double left = (double) col * image.getWidth() / cols;
+        double right = (double) (col + 1) * image.getWidth() / cols;
+        double sum = 0;
+        for (int y = (int) top; y < Math.ceil(bottom); y++) {
+            double height = Math.min(y + 1, bottom) - Math.max(y, top);
+            for (int x = (int) left; x < Math.ceil(right); x++) {
+                double width = Math.min(x + 1, right) - Math.max(x, left);
+                sum += LuminanceTableTest.referenceLuminance(image.getRGB(y, x)) * height * width;
+            }
+        }
+        return sum / ((bottom - top) * (right - left));
+    }
+}
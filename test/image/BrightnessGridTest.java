@@ -0,0 +1,37 @@
+package image;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that aggregating 2x2 blocks of tiles gives exactly the grid tiled directly at half the resolution.
+ */
+public class BrightnessGridTest {
+    private static final int[][] SIZES = {{300, 200}, {64, 64}, {37, 129}, {1000, 3}};
+    private static final int SEED = 14;
+
+    @Test
+    public void downsampleIsDirectTiling() {
+        Random random = new Random(SEED);
+        for (int[] size : SIZES) {
+            Image padded = ImageProcessor.padImageWithWhite(LuminanceTableTest.randomImage(random, size[0], size[1]));
+            LuminanceTable table = ImageProcessor.buildLuminanceTable(padded);
+            for (int resolution = 2; resolution <= padded.getHeight(); resolution *= 2) {
+                BrightnessGrid aggregated = ImageProcessor.calculateBrightnessGrid(table, resolution).downsample();
+                BrightnessGrid direct = ImageProcessor.calculateBrightnessGrid(table, resolution / 2);
+                assertEquals(direct.getRows(), aggregated.getRows());
+                assertEquals(direct.getCols(), aggregated.getCols());
+                for (int row = 0; row < direct.getRows(); row++) {
+                    for (int col = 0; col < direct.getCols(); col++) {
+                        assertEquals(Double.doubleToLongBits(direct.get(row, col)),
+                                Double.doubleToLongBits(aggregated.get(row, col)));
+                        assertEquals(direct.getFixed(row, col), aggregated.getFixed(row, col));
+                    }
+                }
+            }
+        }
+    }
+}
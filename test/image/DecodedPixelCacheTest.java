@@ -0,0 +1,62 @@
+package image;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the cache cleans up the temporary files of writes that never finished.
+ */
+public class DecodedPixelCacheTest {
+    private static final int SIDE = 16;
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final int TEMP_BYTES = 4096;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void staleTempFilesAreDeleted() throws IOException {
+        Path directory = folder.newFolder("cache").toPath();
+        Path stale = Files.write(directory.resolve("orphan.pixels123.tmp"), new byte[TEMP_BYTES]);
+        Files.setLastModifiedTime(stale, FileTime.fromMillis(System.currentTimeMillis() - HOUR_MILLIS));
+        Path fresh = Files.write(directory.resolve("writing.pixels456.tmp"), new byte[TEMP_BYTES]);
+        new DecodedPixelCache(directory, DecodedPixelCache.DEFAULT_BUDGET).load(writeImage("a.png"));
+        assertFalse(Files.exists(stale));
+        assertTrue(Files.exists(fresh));
+    }
+
+    @Test
+    public void freshTempFilesCountAgainstTheBudget() throws IOException {
+        Path directory = folder.newFolder("cache").toPath();
+        long pixelBytes = (long) SIDE * SIDE * Integer.BYTES;
+        DecodedPixelCache cache = new DecodedPixelCache(directory, 2 * pixelBytes + TEMP_BYTES / 2);
+        cache.load(writeImage("a.png"));
+        Files.write(directory.resolve("writing.pixels456.tmp"), new byte[TEMP_BYTES]);
+        cache.load(writeImage("b.png"));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.filter(file -> file.toString().endsWith(".pixels")).count());
+        }
+    }
+
+    private String writeImage(String name) throws IOException {
+        BufferedImage image = new BufferedImage(SIDE, SIDE, BufferedImage.TYPE_INT_RGB);
+        File file = folder.newFile(name);
+        ImageIO.write(image, "png", file);
+        return file.getPath();
+    }
+}
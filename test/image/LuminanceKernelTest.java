@@ -0,0 +1,91 @@
+package image;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the integer luminance kernels against the original double formula
+ * 0.2126 R + 0.7152 G + 0.0722 B, across the chunk boundaries of the reduction and on odd widths.
+ */
+public class LuminanceKernelTest {
+    private static final double TOLERANCE = 1e-12;
+    private static final int[] LENGTHS = {0, 1, 3, 7, 511, 512, 513, 1023, 1024, 1025, 1537, 4099};
+    private static final int[] OFFSETS = {0, 1, 5};
+    private static final int WHITE = 0xFFFFFFFF;
+    private static final int BLACK = 0xFF000000;
+    private static final int SEED = 24;
+
+    @Test
+    public void rowKernelIsTheDoubleFormula() {
+        Random random = new Random(SEED);
+        for (int length : LENGTHS) {
+            int[] pixels = randomPixels(random, length);
+            int[] luminance = new int[length];
+            ImageProcessor.scaledLuminanceRow(pixels, luminance, length);
+            for (int i = 0; i < length; i++) {
+                assertEquals(LuminanceTableTest.referenceLuminance(pixels[i]),
+                        luminance[i] / (double) ImageProcessor.MAX_SCALED_LUMINANCE, TOLERANCE);
+                assertEquals(ImageProcessor.scaledLuminance(pixels[i]), luminance[i]);
+            }
+        }
+    }
+
+    @Test
+    public void reductionIsTheDoubleFormulaAcrossChunks() {
+        Random random = new Random(SEED);
+        for (int length : LENGTHS) {
+            for (int offset : OFFSETS) {
+                int[] pixels = randomPixels(random, offset + length);
+                long exact = 0;
+                double reference = 0;
+                for (int i = offset; i < offset + length; i++) {
+                    exact += ImageProcessor.scaledLuminance(pixels[i]);
+                    reference += LuminanceTableTest.referenceLuminance(pixels[i]);
+                }
+                long sum = ImageProcessor.sumScaledLuminance(pixels, offset, offset + length);
+                assertEquals(exact, sum);
+                assertEquals(reference, sum / (double) ImageProcessor.MAX_SCALED_LUMINANCE, TOLERANCE * (length + 1));
+            }
+        }
+    }
+
+    @Test
+    public void whiteAndBlackRowsAreExact() {
+        for (int length : LENGTHS) {
+            int[] white = new int[length];
+            Arrays.fill(white, WHITE);
+            assertEquals(length * ImageProcessor.MAX_SCALED_LUMINANCE, ImageProcessor.sumScaledLuminance(white, 0, length));
+            int[] black = new int[length];
+            Arrays.fill(black, BLACK);
+            assertEquals(0, ImageProcessor.sumScaledLuminance(black, 0, length));
+        }
+    }
+
+    @Test
+    public void brightnessIsTheDoubleFormula() {
+        Random random = new Random(SEED);
+        int[][] sizes = {{1, 1}, {3, 5}, {511, 2}, {512, 3}, {513, 1}, {1025, 3}, {37, 41}};
+        for (int[] size : sizes) {
+            Image image = LuminanceTableTest.randomImage(random, size[0], size[1]);
+            assertEquals(LuminanceTableTest.referenceBrightness(image), ImageProcessor.calculateBrightness(image), TOLERANCE);
+            int[] white = new int[size[0] * size[1]];
+            Arrays.fill(white, WHITE);
+            assertEquals(1.0, ImageProcessor.calculateBrightness(new Image(white, size[0], size[1])), 0);
+            int[] black = new int[size[0] * size[1]];
+            Arrays.fill(black, BLACK);
+            assertEquals(0.0, ImageProcessor.calculateBrightness(new Image(black, size[0], size[1])), 0);
+        }
+    }
+
+    private static int[] randomPixels(Random random, int length) {
+        int[] pixels = new int[length];
+        for (int i = 0; i < length; i++) {
+            pixels[i] = 0xFF000000 | random.nextInt(1 << 24);
+        }
+        return pixels;
+    }
+}
@@ -0,0 +1,90 @@
+package image;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the summed-area table against the luminance of the pixels
+ * and the tiled brightness against getSubImages followed by calculateBrightness.
+ */
+public class LuminanceTableTest {
+    private static final double TOLERANCE = 1e-12;
+    private static final int[][] SIZES = {{1, 1}, {7, 5}, {64, 64}, {100, 37}, {33, 129}};
+    private static final int SEED = 2;
+    private static final int TRIALS = 50;
+
+    @Test
+    public void sumsMatchThePixels() {
+        Random random = new Random(SEED);
+        for (int[] size : SIZES) {
+            Image image = randomImage(random, size[0], size[1]);
+            LuminanceTable table = ImageProcessor.buildLuminanceTable(image);
+            for (int trial = 0; trial < TRIALS; trial++) {
+                int top = random.nextInt(size[1]);
+                int left = random.nextInt(size[0]);
+                int bottom = top + 1 + random.nextInt(size[1] - top);
+                int right = left + 1 + random.nextInt(size[0] - left);
+                long expected = 0;
+                for (int row = top; row < bottom; row++) {
+                    for (int col = left; col < right; col++) {
+                        expected += ImageProcessor.scaledLuminance(image.getRGB(row, col));
+                    }
+                }
+                assertEquals(expected, table.sum(top, left, bottom, right));
+            }
+        }
+    }
+
+    @Test
+    public void gridMatchesSubImages() {
+        Random random = new Random(SEED);
+        for (int[] size : SIZES) {
+            Image padded = ImageProcessor.padImageWithWhite(randomImage(random, size[0], size[1]));
+            LuminanceTable table = ImageProcessor.buildLuminanceTable(padded);
+            for (int resolution = 1; resolution <= padded.getHeight(); resolution *= 2) {
+                if (padded.getHeight() / resolution > padded.getWidth()) {
+                    continue;
+                }
+                BrightnessGrid grid = ImageProcessor.calculateBrightnessGrid(table, resolution);
+                ArrayList<Image> subImages = ImageProcessor.getSubImages(padded, resolution);
+                assertEquals(subImages.size(), grid.getRows() * grid.getCols());
+                for (int i = 0; i < subImages.size(); i++) {
+                    assertEquals(referenceBrightness(subImages.get(i)),
+                            grid.get(i / grid.getCols(), i % grid.getCols()), TOLERANCE);
+                }
+            }
+        }
+    }
+
+    /**
+     * the brightness of the original implementation, the luminance of every pixel in double.
+     */
+    static double referenceBrightness(Image image) {
+        double sum = 0;
+        for (int row = 0; row < image.getHeight(); row++) {
+            for (int col = 0; col < image.getWidth(); col++) {
+                sum += referenceLuminance(image.getRGB(row, col));
+            }
+        }
+        return sum / (image.getHeight() * image.getWidth());
+    }
+
+    /**
+     * the luminance of a pixel in the original implementation, between 0 and 1.
+     */
+    static double referenceLuminance(int pixel) {
+        return (((pixel >> 16) & 0xFF) * 0.2126 + ((pixel >> 8) & 0xFF) * 0.7152 + (pixel & 0xFF) * 0.0722) / 255.0;
+    }
+
+    static Image randomImage(Random random, int width, int height) {
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xFF000000 | random.nextInt(1 << 24);
+        }
+        return new Image(pixels, width, height);
+    }
+}
@@ -0,0 +1,58 @@
+package image;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the tile shapes against thresholding every cell over the pixels of the padded image.
+ */
+public class ShapeGridTest {
+    private static final int[][] SIZES = {{300, 200}, {64, 64}, {37, 129}, {100, 3}};
+    private static final int[] CELLS = {16, 5, 9};
+    private static final int SEED = 17;
+
+    @Test
+    public void shapesAreTheThresholdedCells() {
+        Random random = new Random(SEED);
+        for (int[] size : SIZES) {
+            Image padded = ImageProcessor.padImageWithWhite(LuminanceTableTest.randomImage(random, size[0], size[1]));
+            LuminanceTable table = ImageProcessor.buildLuminanceTable(padded);
+            for (int cells : CELLS) {
+                for (int resolution = 1; resolution <= padded.getHeight(); resolution *= 2) {
+                    ShapeGrid shapes = ImageProcessor.calculateShapeGrid(table, resolution, cells);
+                    for (int row = 0; row < shapes.getRows(); row++) {
+                        for (int col = 0; col < shapes.getCols(); col++) {
+                            assertShape(padded, resolution, cells, row, col, shapes);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static void assertShape(Image padded, int resolution, int cells, int row, int col, ShapeGrid shapes) {
+        int side = padded.getHeight() / resolution;
+        int offset = shapes.offsetOf(row, col);
+        for (int y = 0; y < cells; y++) {
+            for (int x = 0; x < cells; x++) {
+                int top = row * side + y * side / cells;
+                int bottom = side >= cells ? row * side + (y + 1) * side / cells : top + 1;
+                int left = col * side + x * side / cells;
+                int right = side >= cells ? col * side + (x + 1) * side / cells : left + 1;
+                long sum = 0;
+                for (int pixelRow = top; pixelRow < bottom; pixelRow++) {
+                    for (int pixelCol = left; pixelCol < right; pixelCol++) {
+                        sum += ImageProcessor.scaledLuminance(padded.getRGB(pixelRow, pixelCol));
+                    }
+                }
+                long pixels = (long) (bottom - top) * (right - left);
+                boolean set = 2 * sum >= pixels * ImageProcessor.MAX_SCALED_LUMINANCE;
+                int bit = y * cells + x;
+                assertEquals(set, (shapes.getBits()[offset + bit / Long.SIZE] & (1L << (bit % Long.SIZE))) != 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package image_char_matching;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that saved glyphs load back, and that a truncated file adds no glyph at all.
+ */
+public class GlyphCacheTest {
+    private static final char FIRST_CHAR = 'a';
+    private static final char LAST_CHAR = 'z';
+    private static final int RESOLUTION = 16;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void savedGlyphsLoadBack() throws IOException {
+        GlyphCache rendered = new GlyphCache(CharConverter.FONT_NAME, RESOLUTION);
+        rendered.preload(FIRST_CHAR, LAST_CHAR);
+        Path file = folder.getRoot().toPath().resolve("glyphs.bin");
+        rendered.save(file);
+        GlyphCache loaded = new GlyphCache(CharConverter.FONT_NAME, RESOLUTION);
+        assertTrue(loaded.load(file));
+        for (char c = FIRST_CHAR; c <= LAST_CHAR; c++) {
+            assertArrayEquals(rendered.getGlyph(c), loaded.getGlyph(c));
+        }
+    }
+
+    @Test
+    public void truncatedFileAddsNothing() throws IOException {
+        GlyphCache rendered = new GlyphCache(CharConverter.FONT_NAME, RESOLUTION);
+        rendered.preload(FIRST_CHAR, LAST_CHAR);
+        Path file = folder.getRoot().toPath().resolve("glyphs.bin");
+        rendered.save(file);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+        GlyphCache loaded = new GlyphCache(CharConverter.FONT_NAME, RESOLUTION);
+        try {
+            loaded.load(file);
+            fail("a truncated file was loaded");
+        } catch (IOException e) {
+            // expected
+        }
+        Path saved = folder.getRoot().toPath().resolve("saved.bin");
+        loaded.save(saved);
+        assertTrue(Files.size(saved) < bytes.length / 2); // only the header, no glyph of the broken file
+    }
+}
@@ -0,0 +1,159 @@
+package image_char_matching;
+
+import image.BrightnessGrid;
+import image.Image;
+import image.ImageProcessor;
+import image.LuminanceTable;
+import image_char_matching.RoundingStratgie.RounderFactory;
+import image_char_matching.RoundingStratgie.RoundingKeyStrategy;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that the lookup tables of MatcherSnapshot give exactly what the rounding strategy gives,
+ * at the edges of the buckets, at the keys and at the rounding boundaries between them,
+ * where the buckets are AMBIGUOUS and fall back to the rounding strategy,
+ * and that the fixed-point brightness of a grid matches like its double brightness.
+ */
+public class MatcherSnapshotTest {
+    private static final String[] ROUNDERS = {"abs", "upper", "lower"};
+    private static final int LOOKUP_BUCKETS = 4096;
+    private static final int KEYS = 40;
+    private static final int RANDOM_PROBES = 100000;
+    private static final int SEED = 5;
+    private static final char FIRST_CHAR = 32;
+    private static final char LAST_CHAR = 126;
+    private static final int[][] IMAGE_SIZES = {{300, 200}, {37, 129}, {1024, 8}};
+    private static final double TIE_BAND = 1.0 / (1 << (BrightnessGrid.FIXED_SHIFT + 1));  // getFixed is this close
+
+    @Test
+    public void lookupMatchesTheRounder() {
+        Random random = new Random(SEED);
+        double[][] keySets = {
+                {0, 1},
+                {0, 0.5, 1},
+                {0, 1.0 / LOOKUP_BUCKETS, 3.0 / LOOKUP_BUCKETS, 0.25, 1},  // keys on bucket edges
+                randomKeys(random),
+        };
+        for (String name : ROUNDERS) {
+            RoundingKeyStrategy rounder = new RounderFactory().createRounder(name);
+            for (double[] keys : keySets) {
+                MatcherSnapshot snapshot = snapshot(keys, rounder);
+                for (double brightness : probes(keys, random)) {
+                    assertEquals(name + " " + brightness, reference(keys, rounder, brightness),
+                            snapshot.getCharByImageBrightness(brightness));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void degenerateKeysFallBackToTheRounder() {
+        Random random = new Random(SEED);
+        double[][] keySets = {{0}, {0, 0.5}, {0.25, 1}};
+        for (String name : ROUNDERS) {
+            RoundingKeyStrategy rounder = new RounderFactory().createRounder(name);
+            for (double[] keys : keySets) {
+                MatcherSnapshot snapshot = snapshot(keys, rounder);
+                for (double brightness : probes(keys, random)) {
+                    assertEquals(reference(keys, rounder, brightness), snapshot.getCharByImageBrightness(brightness));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void fixedBrightnessMatchesLikeTheDoubleAwayFromTies() {
+        Random random = new Random(SEED);
+        SubImgCharMatcher matcher = new SubImgCharMatcher(new char[0]);
+        for (char c = FIRST_CHAR; c <= LAST_CHAR; c++) {
+            matcher.addChar(c);
+        }
+        for (String name : ROUNDERS) {
+            matcher.setRounder(name);
+            MatcherSnapshot snapshot = matcher.getSnapshot();
+            for (int[] size : IMAGE_SIZES) {
+                int[] pixels = new int[size[0] * size[1]];
+                for (int i = 0; i < pixels.length; i++) {
+                    pixels[i] = 0xFF000000 | random.nextInt(1 << 24);
+                }
+                LuminanceTable table = ImageProcessor.buildLuminanceTable(
+                        ImageProcessor.padImageWithWhite(new Image(pixels, size[0], size[1])));
+                for (int resolution = 1; resolution <= table.getHeight(); resolution *= 2) {
+                    BrightnessGrid grid = ImageProcessor.calculateBrightnessGrid(table, resolution);
+                    for (int row = 0; row < grid.getRows(); row++) {
+                        for (int col = 0; col < grid.getCols(); col++) {
+                            double brightness = grid.get(row, col);
+                            char expected = snapshot.getCharByImageBrightness(brightness);
+                            boolean nearTie = snapshot.getCharByImageBrightness(Math.max(0, brightness - TIE_BAND))
+                                    != expected || snapshot.getCharByImageBrightness(
+                                    Math.min(1, brightness + TIE_BAND)) != expected;
+                            if (!nearTie) {
+                                assertEquals(expected, snapshot.getCharByFixedBrightness(grid.getFixed(row, col)));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static double[] randomKeys(Random random) {
+        double[] keys = new double[KEYS];
+        for (int i = 1; i < KEYS - 1; i++) {
+            keys[i] = random.nextDouble();
+        }
+        keys[KEYS - 1] = 1;
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    /**
+     * the brightness values to check: every bucket edge, every key, every midpoint between keys,
+     * each with its neighbouring doubles, and random values.
+     */
+    private static List<Double> probes(double[] keys, Random random) {
+        List<Double> points = new ArrayList<>();
+        for (int i = 0; i <= LOOKUP_BUCKETS; i++) {
+            points.add((double) i / LOOKUP_BUCKETS);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            points.add(keys[i]);
+            if (i > 0) {
+                points.add((keys[i - 1] + keys[i]) / 2);
+            }
+        }
+        List<Double> probes = new ArrayList<>();
+        for (double point : points) {
+            probes.add(Math.nextDown(point));
+            probes.add(point);
+            probes.add(Math.nextUp(point));
+        }
+        for (int i = 0; i < RANDOM_PROBES; i++) {
+            probes.add(random.nextDouble());
+        }
+        probes.removeIf(brightness -> brightness < 0 || brightness > 1);
+        return probes;
+    }
+
+    /**
+     * a snapshot whose char of key i is 'A' + i.
+     */
+    static MatcherSnapshot snapshot(double[] keys, RoundingKeyStrategy rounder) {
+        char[] values = new char[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = (char) ('A' + i);
+        }
+        return new MatcherSnapshot(values.clone(), keys, values, rounder, 1);
+    }
+
+    static char reference(double[] keys, RoundingKeyStrategy rounder, double brightness) {
+        return (char) ('A' + rounder.round(keys, brightness));
+    }
+}
@@ -0,0 +1,119 @@
+package image_char_matching;
+
+import image_char_matching.RoundingStratgie.RounderFactory;
+import image_char_matching.RoundingStratgie.RoundingKeyStrategy;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that the snapshots published after random edits of the char set and rounding
+ * match exactly like a mapping built from scratch for the same chars,
+ * and that a snapshot keeps matching the same way after later edits.
+ */
+public class SubImgCharMatcherTest {
+    private static final String[] ROUNDERS = {"abs", "upper", "lower"};
+    private static final char FIRST_CHAR = 32;
+    private static final char LAST_CHAR = 126;
+    private static final int EDITS = 300;
+    private static final int PROBES = 2000;
+    private static final double GLYPH_PIXELS = 256;
+    private static final int SEED = 19;
+
+    @Test
+    public void randomEditsMatchAMappingBuiltFromScratch() {
+        Random random = new Random(SEED);
+        double[] probes = probes(random);
+        SubImgCharMatcher matcher = new SubImgCharMatcher(new char[0]);
+        TreeSet<Character> chars = new TreeSet<>();
+        String rounder = "abs";
+        for (int edit = 0; edit < EDITS; edit++) {
+            char c = (char) (FIRST_CHAR + random.nextInt(LAST_CHAR - FIRST_CHAR + 1));
+            switch (random.nextInt(3)) {
+                case 0 -> {
+                    matcher.addChar(c);
+                    chars.add(c);
+                }
+                case 1 -> {
+                    matcher.removeChar(c);
+                    chars.remove(c);
+                }
+                default -> {
+                    rounder = ROUNDERS[random.nextInt(ROUNDERS.length)];
+                    matcher.setRounder(rounder);
+                }
+            }
+            MatcherSnapshot snapshot = matcher.getSnapshot();
+            char[] expected = reference(chars, rounder, probes);
+            for (int i = 0; i < probes.length; i++) {
+                assertEquals("edit " + edit + " brightness " + probes[i],
+                        expected[i], snapshot.getCharByImageBrightness(probes[i]));
+            }
+        }
+    }
+
+    @Test
+    public void snapshotsDoNotChangeWithTheMatcher() {
+        Random random = new Random(SEED);
+        double[] probes = probes(random);
+        SubImgCharMatcher matcher = new SubImgCharMatcher("0123456789".toCharArray());
+        MatcherSnapshot before = matcher.getSnapshot();
+        char[] expected = new char[probes.length];
+        for (int i = 0; i < probes.length; i++) {
+            expected[i] = before.getCharByImageBrightness(probes[i]);
+        }
+        for (char c = FIRST_CHAR; c <= LAST_CHAR; c++) {
+            matcher.addChar(c);
+        }
+        matcher.setRounder("upper");
+        for (int i = 0; i < probes.length; i++) {
+            assertEquals(expected[i], before.getCharByImageBrightness(probes[i]));
+        }
+    }
+
+    private static double[] probes(Random random) {
+        double[] probes = new double[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            probes[i] = i % 2 == 0 ? random.nextDouble() : (double) i / PROBES;
+        }
+        return probes;
+    }
+
+    /**
+     * matches every brightness with the keys of the chars computed from their glyphs,
+     * each key giving the lowest char of its brightness.
+     */
+    private static char[] reference(TreeSet<Character> chars, String rounderName, double[] probes) {
+        TreeMap<Double, Character> lowest = new TreeMap<>();
+        for (char c : chars) {
+            lowest.putIfAbsent(GlyphCache.getDefault().countSetPixels(c) / GLYPH_PIXELS, c);
+        }
+        char[] result = new char[probes.length];
+        if (lowest.isEmpty()) {
+            Arrays.fill(result, ' ');
+            return result;
+        }
+        double min = lowest.firstKey();
+        double max = lowest.lastKey();
+        List<Double> keys = new ArrayList<>();
+        List<Character> values = new ArrayList<>();
+        for (Map.Entry<Double, Character> entry : lowest.entrySet()) {
+            keys.add(max == min ? 0 : (entry.getKey() - min) / (max - min));
+            values.add(entry.getValue());
+        }
+        double[] keyArray = keys.stream().mapToDouble(Double::doubleValue).toArray();
+        RoundingKeyStrategy rounder = new RounderFactory().createRounder(rounderName);
+        for (int i = 0; i < probes.length; i++) {
+            result[i] = values.get(rounder.round(keyArray, probes[i]));
+        }
+        return result;
+    }
+}